@@ -2,6 +2,7 @@ package jdepend.framework;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The <code>AbstractParser</code> class is the base class 
@@ -14,8 +15,9 @@ import java.util.*;
 
 public abstract class AbstractParser {
 
-    private ArrayList parseListeners;
-    private PackageFilter filter;
+    private List parseListeners;
+    private volatile PackageFilter filter;
+    private volatile PackageRegistry registry;
     public static boolean DEBUG = false;
 
 
@@ -25,7 +27,8 @@ public abstract class AbstractParser {
 
     public AbstractParser(PackageFilter filter) {
         setFilter(filter);
-        parseListeners = new ArrayList();
+        setPackageRegistry(new PackageRegistry());
+        parseListeners = new CopyOnWriteArrayList();
     }
 
     public void addParseListener(ParserListener listener) {
@@ -38,6 +41,35 @@ public abstract class AbstractParser {
      */
     public abstract JavaClass parse(InputStream is) throws IOException;
 
+    /**
+     * Parses the class file read from the specified stream, naming it by
+     * the specified source in error messages where the parser can.
+     * <p>
+     * Registered parser listeners are informed that the resulting
+     * <code>JavaClass</code> was parsed.
+     */
+    public JavaClass parse(InputStream is, String source) throws IOException {
+        return parse(is);
+    }
+
+    /**
+     * Parses the specified class file.
+     * <p>
+     * Registered parser listeners are informed that the resulting
+     * <code>JavaClass</code> was parsed.
+     */
+    public JavaClass parse(File classFile) throws IOException {
+        InputStream is = null;
+        try {
+            is = new BufferedInputStream(new FileInputStream(classFile));
+            return parse(is);
+        } finally {
+            if (is != null) {
+                is.close();
+            }
+        }
+    }
+
     /**
      * Informs registered parser listeners that the specified
      * <code>JavaClass</code> was parsed.
@@ -61,6 +93,34 @@ public abstract class AbstractParser {
         this.filter = filter;
     }
 
+    /**
+     * Returns the registry of the canonical packages imported by
+     * the parsed classes.
+     */
+    protected PackageRegistry getPackageRegistry() {
+        return registry;
+    }
+
+    /**
+     * Sets the registry of the canonical packages imported by the parsed
+     * classes, so that they can be shared with other parsers or with the
+     * analysis.
+     *
+     * @param registry Package registry.
+     */
+    protected void setPackageRegistry(PackageRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Returns a description of the settings which affect the parsed
+     * classes, so that classes parsed with other settings are told apart
+     * when they are cached.
+     */
+    protected String getConfiguration() {
+        return "filter=" + getFilter().getFilters();
+    }
+
     protected void debug(String message) {
         if (DEBUG) {
             System.err.println(message);
@@ -0,0 +1,861 @@
+package jdepend.framework;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The <code>ByteBufferClassFileParser</code> class is responsible for
+ * parsing a Java class file held in a <code>ByteBuffer</code> to create
+ * a <code>JavaClass</code> instance.
+ * <p>
+ * Unlike the <code>ClassFileParser</code>, which reads the class file
+ * through a <code>DataInputStream</code>, this parser decodes every item
+ * by its absolute offset in the buffer. Attribute bodies are never copied:
+ * the ones of interest are read in place and all others are skipped.
+ * Large class files are memory-mapped; smaller ones are read into a
+ * reused heap buffer with a single read.
+ * <p>
+ * The constant pool is held in primitive arrays which are reused from
+ * one class file to the next: the tag of each entry, and either its
+ * indices or the offset of its value in the class file. UTF8 values are
+ * only decoded when they are used, and numeric values never are.
+ * <p>
+ * Package names are extracted from the encoded class names and
+ * descriptors in the constant pool without decoding them, and are looked
+ * up in a table keyed on their encoded bytes. Each package name is
+ * decoded once for all class files parsed by this parser, and the
+ * imported packages are the canonical ones of the package registry.
+ * <p>
+ * The resulting <code>JavaClass</code> instances are identical to the
+ * ones produced by the <code>ClassFileParser</code>, unless the fast
+ * dependency scan is used.
+ * <p>
+ * The fast dependency scan collects package references from the constant
+ * pool alone: the <code>CONSTANT_Class</code> entries, and the types in the
+ * descriptors referenced by <code>CONSTANT_NameAndType</code> and
+ * <code>CONSTANT_MethodType</code> entries. Parsing stops right after the
+ * table of interfaces, so fields, methods, and attributes, including the
+ * bytecode, are never read. When parsing from an input stream, the stream
+ * is only read as far as needed. As a consequence, types that only
+ * appear in declared fields, method signatures, or annotations and the
+ * name of the source file are not reported.
+ * <p>
+ * A parser can be shared by any number of threads. The state of a parse
+ * is held by a context of the calling thread, and package names decoded
+ * by the thread are cached by its context before they are resolved to
+ * the canonical packages of the shared package registry. Registered
+ * parser listeners may be informed concurrently.
+ */
+
+public class ByteBufferClassFileParser extends AbstractParser {
+
+    /**
+     * Class files of at least this size are memory-mapped rather
+     * than read into the heap buffer.
+     */
+    public static final int MAP_THRESHOLD = 64 * 1024;
+
+    private static final String SOURCE_FILE = "SourceFile";
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS =
+        "RuntimeVisibleAnnotations";
+    private static final String DEFAULT_PACKAGE = "Default";
+
+    private volatile boolean fastDependencyScan;
+    private ThreadLocal<ParseContext> contexts;
+
+
+    public ByteBufferClassFileParser() {
+        this(new PackageFilter());
+    }
+
+    public ByteBufferClassFileParser(PackageFilter filter) {
+        super(filter);
+        contexts = new ThreadLocal<ParseContext>() {
+
+            protected ParseContext initialValue() {
+                return new ParseContext();
+            }
+        };
+    }
+
+    /**
+     * Determines whether package references are collected from
+     * the constant pool only.
+     * 
+     * @param b <code>true</code> to scan the constant pool only;
+     *          <code>false</code> to parse the complete class file.
+     */
+    public void useFastDependencyScan(boolean b) {
+        fastDependencyScan = b;
+    }
+
+    protected String getConfiguration() {
+        return super.getConfiguration() + ",fast=" + fastDependencyScan;
+    }
+
+    /**
+     * Parses the specified class file.
+     * <p>
+     * Registered parser listeners are informed that the resulting
+     * <code>JavaClass</code> was parsed.
+     */
+    public JavaClass parse(File classFile) throws IOException {
+        return getContext().parse(classFile);
+    }
+
+    /**
+     * Registered parser listeners are informed that the resulting
+     * <code>JavaClass</code> was parsed.
+     */
+    public JavaClass parse(InputStream is) throws IOException {
+        ParseContext context = getContext();
+        String source = context.source;
+        return context.parse(is, source == null ? "input stream" : source);
+    }
+
+    /**
+     * Parses the class file read from the specified stream through
+     * <code>parse(InputStream)</code>, naming it by the specified source
+     * in error messages.
+     * <p>
+     * Registered parser listeners are informed that the resulting
+     * <code>JavaClass</code> was parsed.
+     */
+    public JavaClass parse(InputStream is, String source) throws IOException {
+        ParseContext context = getContext();
+        context.source = source;
+        try {
+            return parse(is);
+        } finally {
+            context.source = null;
+        }
+    }
+
+    /**
+     * Parses the class file held in the remaining bytes of the specified
+     * buffer. The position of the buffer is not changed.
+     * <p>
+     * Registered parser listeners are informed that the resulting
+     * <code>JavaClass</code> was parsed.
+     *
+     * @param classFile Class file contents.
+     * @return Parsed Java class.
+     * @throws IOException If the class file is invalid.
+     */
+    public JavaClass parse(ByteBuffer classFile) throws IOException {
+        return getContext().parse(classFile.slice(), null, "byte buffer");
+    }
+
+    /**
+     * Returns the parse context of the calling thread.
+     */
+    private ParseContext getContext() {
+        return contexts.get();
+    }
+
+    /**
+     * The <code>ParseContext</code> class holds the state of the parsing
+     * of a class file, and the buffers that are reused from one class
+     * file to the next. Each thread parses with a context of its own.
+     */
+    private class ParseContext {
+
+        private String source;
+        private String fileName;
+        private JavaClass jClass;
+        private ByteBuffer buffer;
+        private int position;
+        private int constantPoolCount;
+        private byte[] tags;
+        private int[] entries;
+        private String[] strings;
+        private int[] annotations;
+        private int annotationCount;
+        private byte[] bytes;
+        private InputStream in;
+        private PackageTable packages;
+
+        ParseContext() {
+            bytes = new byte[8192];
+            tags = new byte[256];
+            entries = new int[256];
+            strings = new String[256];
+            annotations = new int[16];
+            reset();
+        }
+
+        private void reset() {
+            fileName = null;
+            jClass = null;
+            buffer = null;
+            in = null;
+            position = 0;
+            Arrays.fill(strings, 0, constantPoolCount, null);
+            constantPoolCount = 0;
+            annotationCount = 0;
+        }
+
+        JavaClass parse(File classFile) throws IOException {
+
+            String path = classFile.getPath();
+
+            debug("\nParsing " + path + "...");
+
+            FileInputStream in = new FileInputStream(classFile);
+
+            try {
+
+                FileChannel channel = in.getChannel();
+                long size = channel.size();
+
+                if (size >= MAP_THRESHOLD) {
+                    return parse(channel.map(FileChannel.MapMode.READ_ONLY,
+                        0, size), null, path);
+                }
+
+                ByteBuffer heap = ByteBuffer.wrap(allocate((int) size),
+                    0, (int) size);
+                while (heap.hasRemaining()) {
+                    if (channel.read(heap) < 0) {
+                        throw new EOFException("Unexpected end of class file: "
+                            + path);
+                    }
+                }
+                heap.flip();
+
+                return parse(heap, null, path);
+
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                    ioe.printStackTrace();
+                }
+            }
+        }
+
+        JavaClass parse(InputStream is, String source) throws IOException {
+
+            if (fastDependencyScan) {
+                return parse(ByteBuffer.wrap(bytes, 0, 0), is, source);
+            }
+
+            int length = 0;
+            int n;
+
+            while ((n = is.read(bytes, length, bytes.length - length)) >= 0) {
+                length += n;
+                if (length == bytes.length) {
+                    byte[] grown = new byte[bytes.length * 2];
+                    System.arraycopy(bytes, 0, grown, 0, length);
+                    bytes = grown;
+                }
+            }
+
+            return parse(ByteBuffer.wrap(bytes, 0, length), null, source);
+        }
+
+        /**
+         * Parses the class file held in the specified buffer. If an input
+         * stream is specified, the buffer wraps the heap buffer and is
+         * extended with the contents of the stream when needed. Errors
+         * name the class file by the specified source.
+         */
+        JavaClass parse(ByteBuffer classFile, InputStream is, String source)
+                throws IOException {
+
+            reset();
+
+            fileName = source;
+
+            PackageRegistry registry = getPackageRegistry();
+            if (packages == null || packages.getRegistry() != registry) {
+                packages = new PackageTable(registry);
+            }
+
+            jClass = new JavaClass("Unknown");
+
+            buffer = classFile;
+            in = is;
+
+            try {
+
+                parseMagic();
+
+                position += 4; // minor and major version
+
+                parseConstantPool();
+
+                parseAccessFlags();
+
+                parseClassName();
+
+                parseSuperClassName();
+
+                parseInterfaces();
+
+                if (fastDependencyScan) {
+
+                    addConstantPoolReferences();
+
+                } else {
+
+                    parseFields();
+
+                    parseMethods();
+
+                    parseAttributes();
+
+                    addClassConstantReferences();
+
+                    addAnnotationsReferences();
+                }
+
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("Invalid class file: " + fileName);
+            } finally {
+                buffer = null;
+                in = null;
+                fileName = null;
+            }
+
+            JavaClass parsedClass = jClass;
+
+            onParsedJavaClass(parsedClass);
+
+            return parsedClass;
+        }
+
+        /**
+         * Makes sure that the specified number of bytes following the
+         * current position is available, reading them from the input
+         * stream if needed.
+         */
+        private void require(int count) throws IOException {
+            int end = position + count;
+            if (in == null || end <= buffer.limit()) {
+                return;
+            }
+
+            int length = buffer.limit();
+            if (end > bytes.length) {
+                byte[] grown = new byte[Math.max(end, bytes.length * 2)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+
+            while (length < end) {
+                int n = in.read(bytes, length, bytes.length - length);
+                if (n < 0) {
+                    throw new EOFException("Unexpected end of class file: "
+                        + fileName);
+                }
+                length += n;
+            }
+
+            buffer = ByteBuffer.wrap(bytes, 0, length);
+        }
+
+        private byte[] allocate(int size) {
+            if (bytes.length < size) {
+                bytes = new byte[size];
+            }
+            return bytes;
+        }
+
+        private void parseMagic() throws IOException {
+            if (readU4() != ClassFileParser.JAVA_MAGIC) {
+                throw new IOException("Invalid class file: " + fileName);
+            }
+        }
+
+        private void parseConstantPool() throws IOException {
+            int constantPoolSize = readU2();
+
+            if (tags.length < constantPoolSize) {
+                tags = new byte[constantPoolSize];
+                entries = new int[constantPoolSize];
+                strings = new String[constantPoolSize];
+            }
+
+            constantPoolCount = constantPoolSize;
+            tags[0] = 0;
+
+            for (int i = 1; i < constantPoolSize; i++) {
+
+                int tag = parseNextConstant(i);
+
+                //
+                // 8-byte constants use two constant pool entries,
+                // the second of which is left unusable
+                //
+                if ((tag == ClassFileParser.CONSTANT_DOUBLE
+                        || tag == ClassFileParser.CONSTANT_LONG)
+                        && ++i < constantPoolSize) {
+                    tags[i] = 0;
+                }
+            }
+        }
+
+        /**
+         * Parses the next constant into the specified entry of the pool.
+         * Entries referring to other entries hold the first index in their
+         * upper and the second index in their lower 16 bits; all other entries
+         * hold the offset of their value.
+         * 
+         * @return Tag of the constant.
+         */
+        private int parseNextConstant(int entryIndex) throws IOException {
+
+            int entry;
+
+            int tag = readU1();
+
+            switch (tag) {
+
+            case (ClassFileParser.CONSTANT_CLASS):
+            case (ClassFileParser.CONSTANT_STRING):
+            case (ClassFileParser.CONSTANT_METHOD_TYPE):
+                entry = readU2() << 16;
+                break;
+            case (ClassFileParser.CONSTANT_FIELD):
+            case (ClassFileParser.CONSTANT_METHOD):
+            case (ClassFileParser.CONSTANT_INTERFACEMETHOD):
+            case (ClassFileParser.CONSTANT_NAMEANDTYPE):
+            case (ClassFileParser.CONSTANT_INVOKEDYNAMIC):
+                entry = readU2() << 16;
+                entry |= readU2();
+                break;
+            case (ClassFileParser.CONSTANT_INTEGER):
+            case (ClassFileParser.CONSTANT_FLOAT):
+                entry = position;
+                skip(4);
+                break;
+            case (ClassFileParser.CONSTANT_LONG):
+            case (ClassFileParser.CONSTANT_DOUBLE):
+                entry = position;
+                skip(8);
+                break;
+            case (ClassFileParser.CONSTANT_UTF8):
+                int length = readU2();
+                entry = position;
+                skip(length);
+                break;
+            case (ClassFileParser.CONSTANT_METHOD_HANDLE):
+                entry = readU1() << 16;
+                entry |= readU2();
+                break;
+            default:
+                throw new IOException("Unknown constant: " + tag);
+            }
+
+            tags[entryIndex] = (byte) tag;
+            entries[entryIndex] = entry;
+
+            return tag;
+        }
+
+        private void parseAccessFlags() throws IOException {
+            int accessFlags = readU2();
+
+            boolean isAbstract = ((accessFlags & ClassFileParser.ACC_ABSTRACT) != 0);
+            boolean isInterface = ((accessFlags & ClassFileParser.ACC_INTERFACE) != 0);
+
+            jClass.isAbstract(isAbstract || isInterface);
+
+            debug("Parser: abstract = " + jClass.isAbstract());
+        }
+
+        private void parseClassName() throws IOException {
+            int entryIndex = readU2();
+            String className = getClassConstantName(entryIndex);
+            jClass.setName(className);
+            jClass.setPackageName(getClassPackage(entryIndex).getName());
+
+            debug("Parser: class name = " + className);
+            debug("Parser: package name = " + jClass.getPackageName());
+        }
+
+        private void parseSuperClassName() throws IOException {
+            addImport(getClassPackage(readU2()));
+        }
+
+        private void parseInterfaces() throws IOException {
+            int interfacesCount = readU2();
+            for (int i = 0; i < interfacesCount; i++) {
+                addImport(getClassPackage(readU2()));
+            }
+        }
+
+        private void parseFields() throws IOException {
+            int fieldsCount = readU2();
+            for (int i = 0; i < fieldsCount; i++) {
+                position += 2; // access flags
+                position += 2; // name index
+                addDescriptorReferences(readU2());
+                parseFieldOrMethodAttributes(i);
+            }
+        }
+
+        private void parseMethods() throws IOException {
+            int methodsCount = readU2();
+            for (int i = 0; i < methodsCount; i++) {
+                position += 2; // access flags
+                position += 2; // name index
+                addDescriptorReferences(readU2());
+                parseFieldOrMethodAttributes(i);
+            }
+        }
+
+        /**
+         * Skips the attributes of the specified field or method, remembering
+         * its runtime visible annotations.
+         */
+        private void parseFieldOrMethodAttributes(int index) throws IOException {
+            int attributesCount = readU2();
+            for (int a = 0; a < attributesCount; a++) {
+                String name = toUTF8(readU2());
+                int attributeLength = readU4();
+                if (RUNTIME_VISIBLE_ANNOTATIONS.equals(name)) {
+                    addAnnotations(index);
+                }
+                position += attributeLength;
+            }
+        }
+
+        private void parseAttributes() throws IOException {
+            int attributesCount = readU2();
+
+            for (int i = 0; i < attributesCount; i++) {
+                String name = toUTF8(readU2());
+                int attributeLength = readU4();
+
+                // Section 4.7.7 of VM Spec - Class File Format
+                if (SOURCE_FILE.equals(name)) {
+                    jClass.setSourceFile(toUTF8(u2(position)));
+                } else if (RUNTIME_VISIBLE_ANNOTATIONS.equals(name)) {
+                    addAnnotations(i);
+                }
+
+                position += attributeLength;
+            }
+        }
+
+        //
+        // The annotations of the first class attribute, field, and method
+        // are skipped, as they are by the ClassFileParser.
+        //
+        private void addAnnotations(int index) {
+            if (index == 0) {
+                return;
+            }
+            if (annotationCount == annotations.length) {
+                int[] grown = new int[annotations.length * 2];
+                System.arraycopy(annotations, 0, grown, 0, annotationCount);
+                annotations = grown;
+            }
+            annotations[annotationCount++] = position;
+        }
+
+        private void addClassConstantReferences() throws IOException {
+            for (int j = 1; j < constantPoolCount; j++) {
+                if (tags[j] == ClassFileParser.CONSTANT_CLASS) {
+                    addImport(getPackage(nameIndex(j)));
+                }
+            }
+        }
+
+        private void addConstantPoolReferences() throws IOException {
+            for (int j = 1; j < constantPoolCount; j++) {
+
+                switch (tags[j]) {
+
+                case (ClassFileParser.CONSTANT_CLASS):
+                    addImport(getPackage(nameIndex(j)));
+                    break;
+                case (ClassFileParser.CONSTANT_NAMEANDTYPE):
+                    addDescriptorReferences(typeIndex(j));
+                    break;
+                case (ClassFileParser.CONSTANT_METHOD_TYPE):
+                    addDescriptorReferences(nameIndex(j));
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Adds the packages of the class types in the descriptor held by
+         * the specified UTF8 entry.
+         */
+        private void addDescriptorReferences(int entryIndex) throws IOException {
+            int offset = utf8Offset(entryIndex);
+            int end = offset + u2(offset - 2);
+
+            for (int i = offset; i < end; i++) {
+                if (buffer.get(i) == ClassFileParser.CLASS_DESCRIPTOR) {
+                    int typeEnd = indexOf(';', i + 1, end);
+                    if (typeEnd < 0) {
+                        break;
+                    }
+                    if (typeEnd > i + 1) {
+                        addImport(getPackage(i + 1, typeEnd));
+                    }
+                    i = typeEnd;
+                }
+            }
+        }
+
+        private void addAnnotationsReferences() throws IOException {
+            for (int j = 0; j < annotationCount; j++) {
+                addAnnotationReferences(annotations[j]);
+            }
+        }
+
+        private void addAnnotationReferences(int offset) throws IOException {
+            // JVM Spec 4.8.15
+            int numAnnotations = u2(offset);
+            addAnnotationReferences(offset + 2, numAnnotations);
+        }
+
+        private int addAnnotationReferences(int index, int numAnnotations)
+                throws IOException {
+            for (int a = 0; a < numAnnotations; a++) {
+                int typeIndex = u2(index);
+                int numElementValuePairs = u2(index + 2);
+                addDescriptorReferences(typeIndex);
+                index += 4;
+                for (int p = 0; p < numElementValuePairs; p++) {
+                    index = addAnnotationElementValueReferences(index + 2);
+                }
+            }
+            return index;
+        }
+
+        private int addAnnotationElementValueReferences(int index)
+                throws IOException {
+            int tag = buffer.get(index);
+            index += 1;
+            switch (tag) {
+                case 'B':
+                case 'C':
+                case 'D':
+                case 'F':
+                case 'I':
+                case 'J':
+                case 'S':
+                case 'Z':
+                case 's':
+                    index += 2;
+                    break;
+
+                case 'e':
+                    int enumTypeIndex = u2(index);
+                    addDescriptorReferences(enumTypeIndex);
+                    index += 4;
+                    break;
+
+                case 'c':
+                    int classInfoIndex = u2(index);
+                    addDescriptorReferences(classInfoIndex);
+                    index += 2;
+                    break;
+
+                case '@':
+                    index = addAnnotationReferences(index, 1);
+                    break;
+
+                case '[':
+                    int numValues = u2(index);
+                    index = index + 2;
+                    for (int i = 0; i < numValues; i++) {
+                        index = addAnnotationElementValueReferences(index);
+                    }
+                    break;
+            }
+            return index;
+        }
+
+        private int readU1() throws IOException {
+            require(1);
+            return buffer.get(position++) & 0xFF;
+        }
+
+        private int readU2() throws IOException {
+            require(2);
+            int value = u2(position);
+            position += 2;
+            return value;
+        }
+
+        private int readU4() throws IOException {
+            require(4);
+            int value = buffer.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        private void skip(int count) throws IOException {
+            require(count);
+            position += count;
+        }
+
+        private int u2(int index) {
+            return buffer.getShort(index) & 0xFFFF;
+        }
+
+        private int nameIndex(int entryIndex) {
+            return entries[entryIndex] >>> 16;
+        }
+
+        private int typeIndex(int entryIndex) {
+            return entries[entryIndex] & 0xFFFF;
+        }
+
+        private void checkConstantPoolIndex(int entryIndex) throws IOException {
+
+            if (entryIndex < 0 || entryIndex >= constantPoolCount) {
+                throw new IOException("Illegal constant pool index : " + entryIndex);
+            }
+        }
+
+        private String getClassConstantName(int entryIndex) throws IOException {
+
+            checkConstantPoolIndex(entryIndex);
+            if (tags[entryIndex] == 0) {
+                return "";
+            }
+            return slashesToDots(toUTF8(nameIndex(entryIndex)));
+        }
+
+        /**
+         * Returns the package of the class referred to by the specified
+         * <code>CONSTANT_Class</code> entry.
+         */
+        private JavaPackage getClassPackage(int entryIndex) throws IOException {
+
+            checkConstantPoolIndex(entryIndex);
+            if (tags[entryIndex] == 0) {
+                return getPackageRegistry().getPackage(DEFAULT_PACKAGE);
+            }
+            return getPackage(nameIndex(entryIndex));
+        }
+
+        private String toUTF8(int entryIndex) throws IOException {
+            String value = strings[entryIndex];
+            if (value == null) {
+                int offset = utf8Offset(entryIndex);
+                value = decodeUTF8(offset, u2(offset - 2));
+                strings[entryIndex] = value;
+            }
+
+            return value;
+        }
+
+        /**
+         * Returns the offset of the value of the specified UTF8 entry.
+         */
+        private int utf8Offset(int entryIndex) throws IOException {
+            checkConstantPoolIndex(entryIndex);
+            if (tags[entryIndex] != ClassFileParser.CONSTANT_UTF8) {
+                throw new IOException("Constant pool entry is not a UTF8 type: "
+                        + entryIndex);
+            }
+            return entries[entryIndex];
+        }
+
+        /**
+         * Decodes the modified UTF-8 string of the specified length
+         * at the specified offset.
+         */
+        private String decodeUTF8(int offset, int length) throws IOException {
+            char[] chars = new char[length];
+            int count = 0;
+            int end = offset + length;
+
+            while (offset < end) {
+                int b = buffer.get(offset++) & 0xFF;
+                if (b < 0x80) {
+                    chars[count++] = (char) b;
+                } else if ((b & 0xE0) == 0xC0 && offset < end) {
+                    int b2 = buffer.get(offset++) & 0x3F;
+                    chars[count++] = (char) (((b & 0x1F) << 6) | b2);
+                } else if ((b & 0xF0) == 0xE0 && offset + 1 < end) {
+                    int b2 = buffer.get(offset++) & 0x3F;
+                    int b3 = buffer.get(offset++) & 0x3F;
+                    chars[count++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+                } else {
+                    throw new UTFDataFormatException("Malformed UTF8 constant in "
+                        + fileName);
+                }
+            }
+
+            return new String(chars, 0, count);
+        }
+
+        private void addImport(JavaPackage importPackage) {
+            if ((importPackage != null)
+                    && (getFilter().accept(importPackage.getName()))) {
+                jClass.addImportedPackage(importPackage);
+            }
+        }
+
+        private String slashesToDots(String s) {
+            return s.replace('/', '.');
+        }
+
+        /**
+         * Returns the package of the class or array type named by the
+         * specified UTF8 entry, or <code>null</code> for arrays of primitives.
+         */
+        private JavaPackage getPackage(int entryIndex) throws IOException {
+            int offset = utf8Offset(entryIndex);
+            int end = offset + u2(offset - 2);
+
+            if (offset < end && buffer.get(offset) == '[') {
+                while (offset < end && buffer.get(offset) == '[') {
+                    offset++;
+                }
+                if (offset == end
+                        || buffer.get(offset) != ClassFileParser.CLASS_DESCRIPTOR) {
+                    return null; // primitives
+                }
+                offset++;
+                end = indexOf(';', offset, end);
+                if (end < 0) {
+                    throw new IOException("Invalid class file: " + fileName);
+                }
+            }
+
+            return getPackage(offset, end);
+        }
+
+        /**
+         * Returns the package of the class whose internal name is held by the
+         * specified range of the buffer. The name of a package is only decoded
+         * the first time it is seen, when its canonical package is obtained
+         * from the package registry.
+         */
+        private JavaPackage getPackage(int offset, int end) throws IOException {
+            int index = end - 1;
+            while (index > offset && buffer.get(index) != '/') {
+                index--;
+            }
+            if (index > offset) {
+                return packages.getPackage(buffer, offset, index - offset);
+            }
+
+            return getPackageRegistry().getPackage(DEFAULT_PACKAGE);
+        }
+
+        private int indexOf(int b, int offset, int end) {
+            for (int i = offset; i < end; i++) {
+                if (buffer.get(i) == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
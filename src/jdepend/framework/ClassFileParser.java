@@ -7,6 +7,10 @@ import java.util.*;
  * The <code>ClassFileParser</code> class is responsible for 
  * parsing a Java class file to create a <code>JavaClass</code> 
  * instance.
+ * <p>
+ * The parser keeps the state of a parse in its fields, so a parser
+ * shared by several threads parses one class file at a time. The
+ * <code>ByteBufferClassFileParser</code> parses concurrently.
  * 
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -74,7 +78,7 @@ public class ClassFileParser extends AbstractParser {
      * Registered parser listeners are informed that the resulting
      * <code>JavaClass</code> was parsed.
      */
-    public JavaClass parse(File classFile) throws IOException {
+    public synchronized JavaClass parse(File classFile) throws IOException {
 
         this.fileName = classFile.getCanonicalPath();
 
@@ -99,7 +103,7 @@ public class ClassFileParser extends AbstractParser {
         }
     }
 
-    public JavaClass parse(InputStream is) throws IOException {
+    public synchronized JavaClass parse(InputStream is) throws IOException {
 
         reset();
 
@@ -283,16 +287,14 @@ public class ClassFileParser extends AbstractParser {
                     .readUnsignedShort());
             break;
         case (ClassFileParser.CONSTANT_INTEGER):
-            result = new Constant(tag, new Integer(in.readInt()));
-            break;
         case (ClassFileParser.CONSTANT_FLOAT):
-            result = new Constant(tag, new Float(in.readFloat()));
+            in.readInt(); // numeric values are never used
+            result = new Constant(tag, -1);
             break;
         case (ClassFileParser.CONSTANT_LONG):
-            result = new Constant(tag, new Long(in.readLong()));
-            break;
         case (ClassFileParser.CONSTANT_DOUBLE):
-            result = new Constant(tag, new Double(in.readDouble()));
+            in.readLong(); // numeric values are never used
+            result = new Constant(tag, -1);
             break;
         case (ClassFileParser.CONSTANT_UTF8):
             result = new Constant(tag, in.readUTF());
@@ -500,7 +502,8 @@ public class ClassFileParser extends AbstractParser {
 
     private void addImport(String importPackage) {
         if ((importPackage != null) && (getFilter().accept(importPackage))) {
-            jClass.addImportedPackage(new JavaPackage(importPackage));
+            jClass.addImportedPackage(
+                getPackageRegistry().getPackage(importPackage));
         }
     }
 
@@ -0,0 +1,108 @@
+package jdepend.framework;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>ComponentMatcher</code> class maps package names to the
+ * components containing them.
+ * <p>
+ * The components are kept in a tree with a node per package name
+ * segment, so that finding the component of a package takes one step
+ * per segment of its name, however many components there are. A package
+ * belongs to the longest component of which it is the package itself or
+ * a subpackage. The component of each package is remembered once found.
+ * <p>
+ * A matcher can be shared by threads once constructed.
+ */
+
+class ComponentMatcher {
+
+    private final Segment root;
+    private final Map matches;
+
+
+    /**
+     * Constructs a <code>ComponentMatcher</code> instance with the
+     * specified components.
+     *
+     * @param components Collection of component names.
+     */
+    ComponentMatcher(Collection components) {
+        root = new Segment();
+        matches = new ConcurrentHashMap();
+        for (Iterator i = components.iterator(); i.hasNext();) {
+            add((String)i.next());
+        }
+    }
+
+    private void add(String component) {
+        Segment segment = root;
+        int start = 0;
+        while (true) {
+            int end = component.indexOf('.', start);
+            String name = end < 0 ?
+                component.substring(start) : component.substring(start, end);
+            Segment child = (Segment)segment.children.get(name);
+            if (child == null) {
+                child = new Segment();
+                segment.children.put(name, child);
+            }
+            segment = child;
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        segment.component = component;
+    }
+
+    /**
+     * Returns the name of the component containing the specified package.
+     *
+     * @param packageName Package name.
+     * @return Component name, or the package name if no component
+     *         contains the package.
+     */
+    String toComponent(String packageName) {
+        String component = (String)matches.get(packageName);
+        if (component == null) {
+            component = match(packageName);
+            matches.put(packageName, component);
+        }
+        return component;
+    }
+
+    private String match(String packageName) {
+        String component = packageName;
+        Segment segment = root;
+        int start = 0;
+        while (!segment.children.isEmpty()) {
+            int end = packageName.indexOf('.', start);
+            String name = end < 0 ? packageName.substring(start) :
+                packageName.substring(start, end);
+            segment = (Segment)segment.children.get(name);
+            if (segment == null) {
+                break;
+            }
+            if (segment.component != null) {
+                component = segment.component;
+            }
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        return component;
+    }
+
+    /**
+     * A package name segment, with the segments following it in the
+     * component names.
+     */
+    private static class Segment {
+
+        private final Map children = new HashMap();
+        private String component;
+    }
+}
@@ -0,0 +1,319 @@
+package jdepend.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>CycleDetector</code> class determines which packages
+ * contain a dependency cycle, that is, which packages participate in a
+ * cycle or depend on a package which does.
+ * <p>
+ * The packages reachable from a package are numbered, with their
+ * efferents kept as in a <code>PackageGraph</code>, and their strongly
+ * connected components are found in a single iterative pass by
+ * <code>findComponents</code>, which also serves the other analyses of
+ * package graphs. Packages already known when the pass reaches them are
+ * not numbered, so answering for all packages of a graph takes time
+ * linear in the number of dependencies.
+ * <p>
+ * The results are kept by the group of packages connected by
+ * dependencies, which each <code>CycleDetector</code> instance stands
+ * for. Groups are merged when a package comes to depend upon a package
+ * of another group, and a group discards its results when a dependency
+ * of one of its packages changes, so the packages of other analyses
+ * keep theirs. Packages of different threads can change their 
+ * dependencies at once, as groups are only changed under a lock.
+ */
+
+class CycleDetector {
+
+    private CycleDetector parent;
+    private int size;
+    private Map results;
+
+
+    /**
+     * Constructs a <code>CycleDetector</code> instance for a group of
+     * a single package.
+     */
+    CycleDetector() {
+        size = 1;
+    }
+
+    /**
+     * Records that the efferents of the specified package changed,
+     * discarding the results of its group, and merging it with the
+     * groups of the specified efferents.
+     *
+     * @param jPackage Java package.
+     * @param efferents Collection of the added <code>JavaPackage</code>
+     *        instances.
+     */
+    static synchronized void graphChanged(JavaPackage jPackage, Collection efferents) {
+        CycleDetector group = getGroup(jPackage);
+        for (Iterator i = efferents.iterator(); i.hasNext();) {
+            group = group.merge(getGroup((JavaPackage)i.next()));
+        }
+        group.results = null;
+    }
+
+    /**
+     * Indicates whether the specified package participates in a cycle
+     * or depends on a package which does.
+     *
+     * @param jPackage Java package.
+     * @return <code>true</code> if the package contains a cycle.
+     */
+    static synchronized boolean containsCycle(JavaPackage jPackage) {
+        Boolean cyclic = getResult(jPackage);
+        if (cyclic == null) {
+            detect(Collections.singleton(jPackage), false);
+            cyclic = getResult(jPackage);
+        }
+        return cyclic.booleanValue();
+    }
+
+    /**
+     * Returns the strongly connected components of the specified packages
+     * and the packages they depend upon which have more than one member,
+     * that is, the groups of packages which depend upon each other.
+     *
+     * @param packages Collection of <code>JavaPackage</code> instances.
+     * @return List of <code>List</code> instances of
+     *         <code>JavaPackage</code> instances.
+     */
+    static synchronized List getComponents(Collection packages) {
+        return detect(packages, true);
+    }
+
+    private static CycleDetector getGroup(JavaPackage jPackage) {
+        CycleDetector group = jPackage.getCycleDetector();
+        CycleDetector root = group;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+        while (group != root) {
+            CycleDetector next = group.parent;
+            group.parent = root;
+            group = next;
+        }
+        return root;
+    }
+
+    private static Boolean getResult(JavaPackage jPackage) {
+        Map results = getGroup(jPackage).results;
+        return results == null ? null : (Boolean)results.get(jPackage);
+    }
+
+    private static void setResult(JavaPackage jPackage, boolean cyclic) {
+        CycleDetector group = getGroup(jPackage);
+        if (group.results == null) {
+            group.results = new IdentityHashMap();
+        }
+        group.results.put(jPackage, Boolean.valueOf(cyclic));
+    }
+
+    /**
+     * Merges this group with the other, keeping the results of neither,
+     * and returns the merged group.
+     */
+    private CycleDetector merge(CycleDetector other) {
+        if (other == this) {
+            return this;
+        }
+        CycleDetector root = size < other.size ? other : this;
+        CycleDetector child = root == this ? other : this;
+        child.parent = root;
+        child.results = null;
+        root.size += child.size;
+        root.results = null;
+        return root;
+    }
+
+    /**
+     * Finds the strongly connected components of the packages reachable
+     * from the specified packages, not going past the packages whose
+     * result is known if the components are not collected, and records
+     * the result of each package it completes.
+     */
+    private static List detect(Collection packages, boolean collect) {
+
+        Map ids = new IdentityHashMap();
+        List numbered = new ArrayList();
+        for (Iterator i = packages.iterator(); i.hasNext();) {
+            number((JavaPackage)i.next(), ids, numbered);
+        }
+
+        int[] starts = new int[16];
+        int[] efferentIds = new int[16];
+        boolean[] dependsOnCycle = new boolean[16];
+        for (int id = 0; id < numbered.size(); id++) {
+            if (id + 1 == starts.length) {
+                starts = grow(starts, id + 2);
+                dependsOnCycle = grow(dependsOnCycle, id + 2);
+            }
+            int count = starts[id];
+            JavaPackage jPackage = (JavaPackage)numbered.get(id);
+            for (Iterator i = jPackage.getEfferents().iterator();
+                    i.hasNext();) {
+                JavaPackage efferent = (JavaPackage)i.next();
+                Boolean known = collect ? null : getResult(efferent);
+                if (known != null) {
+                    dependsOnCycle[id] |= known.booleanValue();
+                    continue;
+                }
+                if (count == efferentIds.length) {
+                    efferentIds = grow(efferentIds, count + 1);
+                }
+                efferentIds[count++] = number(efferent, ids, numbered);
+            }
+            starts[id + 1] = count;
+        }
+
+        int size = numbered.size();
+        int[] componentIds = new int[size];
+        int count = findComponents(starts, efferentIds, componentIds);
+
+        List[] components = new List[count];
+        for (int id = 0; id < size; id++) {
+            int c = componentIds[id];
+            if (components[c] == null) {
+                components[c] = new ArrayList();
+            }
+            components[c].add(numbered.get(id));
+        }
+
+        boolean[] cyclic = new boolean[count];
+        for (int id = 0; id < size; id++) {
+            int c = componentIds[id];
+            cyclic[c] |= dependsOnCycle[id] || components[c].size() > 1;
+        }
+
+        List found = new ArrayList();
+        for (int c = 0; c < count; c++) {
+            for (Iterator i = components[c].iterator();
+                    !cyclic[c] && i.hasNext();) {
+                int id = ((Integer)ids.get(i.next())).intValue();
+                for (int j = starts[id]; j < starts[id + 1]; j++) {
+                    cyclic[c] |= cyclic[componentIds[efferentIds[j]]];
+                }
+            }
+            for (Iterator i = components[c].iterator(); i.hasNext();) {
+                setResult((JavaPackage)i.next(), cyclic[c]);
+            }
+            if (components[c].size() > 1) {
+                found.add(components[c]);
+            }
+        }
+
+        return found;
+    }
+
+    private static int number(JavaPackage jPackage, Map ids,
+        List numbered) {
+        Integer id = (Integer)ids.get(jPackage);
+        if (id == null) {
+            id = Integer.valueOf(numbered.size());
+            ids.put(jPackage, id);
+            numbered.add(jPackage);
+        }
+        return id.intValue();
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] grown = new int[Math.max(length, array.length * 2)];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static boolean[] grow(boolean[] array, int length) {
+        boolean[] grown = new boolean[Math.max(length, array.length * 2)];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    /**
+     * Numbers the strongly connected component of each package of a
+     * graph whose efferents are kept as in a <code>PackageGraph</code>,
+     * using an iterative form of Tarjan's algorithm. Components are
+     * numbered as they are completed, so a component depends only upon
+     * components with lower numbers.
+     *
+     * @param starts Position of the efferents of each package.
+     * @param ids Efferents of the packages in turn.
+     * @param components Array receiving the component of each package.
+     * @return Number of components.
+     */
+    static int findComponents(int[] starts, int[] ids, int[] components) {
+
+        int size = components.length;
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int[] frames = new int[size];
+        int[] next = new int[size];
+        int stackSize = 0;
+        int count = 0;
+        int visited = 0;
+
+        Arrays.fill(index, -1);
+
+        for (int root = 0; root < size; root++) {
+
+            if (index[root] >= 0) {
+                continue;
+            }
+
+            int depth = 0;
+            frames[depth++] = root;
+            index[root] = lowLink[root] = visited++;
+            next[root] = starts[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+
+                int id = frames[depth - 1];
+
+                if (next[id] < starts[id + 1]) {
+                    int efferent = ids[next[id]++];
+                    if (index[efferent] < 0) {
+                        frames[depth++] = efferent;
+                        index[efferent] = lowLink[efferent] = visited++;
+                        next[efferent] = starts[efferent];
+                        stack[stackSize++] = efferent;
+                        onStack[efferent] = true;
+                    } else if (onStack[efferent]) {
+                        lowLink[id] = Math.min(lowLink[id], index[efferent]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (depth > 0) {
+                    int parent = frames[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[id]);
+                }
+
+                if (lowLink[id] == index[id]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        components[member] = count;
+                    } while (member != id);
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,337 @@
+package jdepend.framework;
+
+import java.util.*;
+
+/**
+ * The <code>CycleEnumerator</code> class finds the elementary package
+ * dependency cycles of a collection of packages, that is, the cycles
+ * which do not pass through a package twice, and reports each of them
+ * once to a <code>CycleListener</code> as it is found.
+ * <p>
+ * Cycles are searched for within each group of packages which depend
+ * upon each other, and are reported by increasing length, so that the
+ * shortest cycles, which are usually the easiest to break, come first.
+ * The number of elementary cycles of densely connected packages grows
+ * exponentially, so the length of the cycles, their number, and the time
+ * spent finding them can be limited.
+ * <p>
+ * The distances to each package are computed once per enumeration, and a
+ * package is no longer searched from once no longer cycles through it
+ * remain, so that searching for longer cycles does not repeat the work
+ * done for shorter ones when the packages have no longer cycles.
+ */
+
+public class CycleEnumerator {
+
+    private int maxLength;
+    private int maxCycles;
+    private long timeLimit;
+    private boolean complete;
+
+    private CycleListener listener;
+    private long deadline;
+    private int count;
+    private int steps;
+    private boolean truncated;
+
+
+    /**
+     * Constructs a <code>CycleEnumerator</code> instance finding all
+     * elementary cycles.
+     */
+    public CycleEnumerator() {
+        maxLength = 0;
+        maxCycles = 0;
+        timeLimit = 0;
+        complete = true;
+    }
+
+    /**
+     * Sets the maximum number of packages of a reported cycle.
+     *
+     * @param maxLength Maximum cycle length; <code>0</code> for no limit.
+     */
+    public void setMaxLength(int maxLength) {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException(
+                "Invalid maximum cycle length: " + maxLength);
+        }
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Sets the maximum number of reported cycles.
+     *
+     * @param maxCycles Maximum number of cycles; <code>0</code> for no
+     *        limit.
+     */
+    public void setMaxCycles(int maxCycles) {
+        if (maxCycles < 0) {
+            throw new IllegalArgumentException(
+                "Invalid maximum number of cycles: " + maxCycles);
+        }
+        this.maxCycles = maxCycles;
+    }
+
+    /**
+     * Sets the time after which no further cycles are searched for.
+     *
+     * @param timeLimit Time limit, in milliseconds; <code>0</code> for
+     *        no limit.
+     */
+    public void setTimeLimit(long timeLimit) {
+        if (timeLimit < 0) {
+            throw new IllegalArgumentException(
+                "Invalid time limit: " + timeLimit);
+        }
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Indicates whether the last enumeration reported all the cycles no
+     * longer than the maximum length, rather than being stopped by the
+     * maximum number of cycles or the time limit.
+     *
+     * @return <code>true</code> if all cycles were reported.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Reports the elementary cycles of the specified packages and the
+     * packages they depend upon to the specified listener.
+     *
+     * @param packages Collection of <code>JavaPackage</code> instances.
+     * @param listener Cycle listener.
+     * @return Number of reported cycles.
+     */
+    public int enumerate(Collection packages, CycleListener listener) {
+
+        this.listener = listener;
+        this.count = 0;
+        this.steps = 0;
+        this.complete = false;
+        this.deadline = timeLimit > 0 ?
+            System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+
+        List components = new ArrayList();
+        int longest = 0;
+        for (Iterator i = CycleDetector.getComponents(packages).iterator();
+                i.hasNext();) {
+            Component component = new Component((List)i.next());
+            components.add(component);
+            longest = Math.max(longest, component.size());
+        }
+
+        int limit = maxLength > 0 ? Math.min(maxLength, longest) : longest;
+        for (int length = 2; length <= limit; length++) {
+            for (Iterator i = components.iterator(); i.hasNext();) {
+                Component component = (Component)i.next();
+                for (int start = 0; start <= component.size() - length;
+                        start++) {
+                    if (System.currentTimeMillis() > deadline) {
+                        return count;
+                    }
+                    if (component.isFinished(start)) {
+                        continue;
+                    }
+                    if (!search(component, start, length)) {
+                        return count;
+                    }
+                    if (!truncated) {
+                        component.finish(start);
+                    }
+                }
+            }
+        }
+
+        complete = true;
+        return count;
+    }
+
+    /**
+     * Reports the cycles of the specified length through the specified
+     * package which pass only through packages following it, noting
+     * whether longer paths were left out, as longer cycles may remain.
+     *
+     * @return <code>false</code> if the enumeration must stop.
+     */
+    private boolean search(Component component, int start, int length) {
+
+        truncated = false;
+        int[] distances = component.getDistances(start);
+        int[] path = new int[length];
+        int[] next = new int[length];
+        boolean[] onPath = new boolean[component.size()];
+
+        path[0] = start;
+        onPath[start] = true;
+        int depth = 1;
+
+        while (depth > 0) {
+
+            if ((++steps & 0xFFF) == 0 &&
+                System.currentTimeMillis() > deadline) {
+                return false;
+            }
+
+            int current = path[depth - 1];
+            int[] efferents = component.efferents[current];
+            if (next[depth - 1] == efferents.length) {
+                onPath[current] = false;
+                depth--;
+                continue;
+            }
+
+            int efferent = efferents[next[depth - 1]++];
+            if (efferent == start) {
+                if (depth == length && !report(component, path)) {
+                    return false;
+                }
+            } else if (efferent > start && !onPath[efferent] &&
+                distances[efferent] > 0) {
+                if (depth + distances[efferent] > length) {
+                    truncated = true;
+                } else {
+                    path[depth] = efferent;
+                    next[depth] = 0;
+                    onPath[efferent] = true;
+                    depth++;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private boolean report(Component component, int[] path) {
+
+        if (maxCycles > 0 && count == maxCycles) {
+            return false;
+        }
+
+        List cycle = new ArrayList(path.length);
+        for (int i = 0; i < path.length; i++) {
+            cycle.add(component.packages[path[i]]);
+        }
+        count++;
+        listener.onCycle(cycle);
+
+        return true;
+    }
+
+    /**
+     * A group of packages which depend upon each other, ordered by name,
+     * with their dependencies upon each other.
+     */
+    private static class Component {
+
+        private final JavaPackage[] packages;
+        private final int[][] efferents;
+        private final int[][] afferents;
+        private final int[][] distances;
+        private final boolean[] finished;
+
+        Component(List members) {
+
+            packages = (JavaPackage[])members.toArray(
+                new JavaPackage[members.size()]);
+            Arrays.sort(packages, new PackageComparator(
+                PackageComparator.byName()));
+
+            Map indexes = new IdentityHashMap();
+            for (int i = 0; i < packages.length; i++) {
+                indexes.put(packages[i], Integer.valueOf(i));
+            }
+
+            efferents = new int[packages.length][];
+            int[] afferentCounts = new int[packages.length];
+            for (int i = 0; i < packages.length; i++) {
+                List internal = new ArrayList();
+                for (Iterator j = packages[i].getEfferents().iterator();
+                        j.hasNext();) {
+                    Integer index = (Integer)indexes.get(j.next());
+                    if (index != null) {
+                        internal.add(index);
+                        afferentCounts[index.intValue()]++;
+                    }
+                }
+                efferents[i] = new int[internal.size()];
+                for (int j = 0; j < efferents[i].length; j++) {
+                    efferents[i][j] = ((Integer)internal.get(j)).intValue();
+                }
+                Arrays.sort(efferents[i]);
+            }
+
+            afferents = new int[packages.length][];
+            for (int i = 0; i < packages.length; i++) {
+                afferents[i] = new int[afferentCounts[i]];
+                afferentCounts[i] = 0;
+            }
+            for (int i = 0; i < packages.length; i++) {
+                for (int j = 0; j < efferents[i].length; j++) {
+                    int efferent = efferents[i][j];
+                    afferents[efferent][afferentCounts[efferent]++] = i;
+                }
+            }
+
+            distances = new int[packages.length][];
+            finished = new boolean[packages.length];
+        }
+
+        int size() {
+            return packages.length;
+        }
+
+        /**
+         * Indicates whether all the cycles through the specified package
+         * and packages following it were reported.
+         */
+        boolean isFinished(int start) {
+            return finished[start];
+        }
+
+        void finish(int start) {
+            finished[start] = true;
+            distances[start] = null;
+        }
+
+        /**
+         * Returns the number of dependencies on the shortest path from
+         * each package to the specified package through packages following
+         * it, or <code>-1</code> for packages without such a path.
+         */
+        int[] getDistances(int start) {
+            if (distances[start] == null) {
+                distances[start] = findDistances(start);
+            }
+            return distances[start];
+        }
+
+        private int[] findDistances(int start) {
+
+            int[] distances = new int[packages.length];
+            Arrays.fill(distances, -1);
+            distances[start] = 0;
+
+            int[] queue = new int[packages.length];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+
+            while (head < tail) {
+                int current = queue[head++];
+                for (int i = 0; i < afferents[current].length; i++) {
+                    int afferent = afferents[current][i];
+                    if (afferent > start && distances[afferent] < 0) {
+                        distances[afferent] = distances[current] + 1;
+                        queue[tail++] = afferent;
+                    }
+                }
+            }
+
+            return distances;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package jdepend.framework;
+
+import java.util.List;
+
+/**
+ * The <code>CycleListener</code> interface defines a listener notified
+ * of each elementary package dependency cycle found by a
+ * <code>CycleEnumerator</code>.
+ * <p>
+ * Implementers of this interface are passed to the
+ * <code>CycleEnumerator.enumerate()</code> method.
+ */
+
+public interface CycleListener {
+
+    /**
+     * Called whenever an elementary cycle is found.
+     *
+     * @param cycle <code>JavaPackage</code> instances of the cycle, in
+     *        dependency order, starting with the package whose name
+     *        comes first. The first package is not repeated at the end.
+     */
+    public void onCycle(List cycle);
+
+}
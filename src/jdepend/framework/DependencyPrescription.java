@@ -45,13 +45,14 @@ public class DependencyPrescription extends DependencyDirective {
 
 	/**
 	 * Indicates whether the specified packages match the packages in this
-	 * prescription.
+	 * prescription, that is, whether they are the same packages with the
+	 * same dependencies.
 	 * 
 	 * @return <code>true</code> if the packages match this constraint
 	 */
 	@Override
 	public boolean followsDirective(Collection<JavaPackage> packages) {
-		if (packages.size() == packages.size()) {
+		if (this.packages.size() == packages.size()) {
 
 			for (Iterator<JavaPackage> i = packages.iterator(); i.hasNext();) {
 				Object next = i.next();
@@ -59,9 +60,9 @@ public class DependencyPrescription extends DependencyDirective {
 				if (!matchPackage(nextPackage)) {
 					return false;
 				}
-
-				return true;
 			}
+
+			return true;
 		}
 
 		return false;
@@ -1,7 +1,7 @@
 package jdepend.framework;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.List;
 
 /**
  * The <code>DependencyProscription</code> defines a set of disallowed package
@@ -14,47 +14,43 @@ public class DependencyProscription extends DependencyDirective {
 
 	@Override
 	public boolean followsDirective(Collection<JavaPackage> packages) {
-		for (JavaPackage pckg : packages) {
-			if (hasDisallowedCouplings(pckg)) {
-				return false;
-			}
-		}
-		return true;
+		return getViolations(packages).isEmpty();
 	}
 
-	private boolean hasDisallowedCouplings(JavaPackage verifiedPackage) {
-		JavaPackage restrictedPackage = packages.get(verifiedPackage.getName());
-
-		if (restrictedPackage == null) {
-			return false;
-		}
-		
-		if (hasDisallowedAfferents(restrictedPackage, verifiedPackage)) {
-			return true;
-		}
+	/**
+	 * Returns the dependencies of the specified packages, and upon them,
+	 * which are disallowed by this proscription.
+	 * 
+	 * @param packages the packages to verify against this proscription.
+	 * @return the disallowed dependencies, as
+	 *         <code>DependencyViolation</code> instances.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<DependencyViolation> getViolations(
+			Collection<JavaPackage> packages) {
+		return getRules().check(packages);
+	}
 
-		if (hasDisallowedEfferents(restrictedPackage, verifiedPackage)) {
-			return true;
+	/**
+	 * Returns the rules forbidding each disallowed dependency of this
+	 * proscription.
+	 * 
+	 * @return the dependency rules.
+	 */
+	public DependencyRules getRules() {
+		DependencyRules rules = new DependencyRules();
+		for (JavaPackage restrictedPackage : packages.values()) {
+			for (Object efferent : restrictedPackage.getEfferents()) {
+				rules.forbid(restrictedPackage.getName(),
+						((JavaPackage) efferent).getName());
+			}
+			for (Object afferent : restrictedPackage.getAfferents()) {
+				String afferentName = ((JavaPackage) afferent).getName();
+				if (!packages.containsKey(afferentName)) {
+					rules.forbid(afferentName, restrictedPackage.getName());
+				}
+			}
 		}
-
-		return false;
-	}
-	
-	private boolean hasDisallowedAfferents(JavaPackage restrictedPackage, JavaPackage verifiedPackage) {
-		final Collection<JavaPackage> disallowedAfferents = restrictedPackage
-				.getAfferents();
-		final Collection<JavaPackage> actualAfferents = new HashSet<JavaPackage>(
-				verifiedPackage.getAfferents());
-		actualAfferents.retainAll(disallowedAfferents);
-		return !actualAfferents.isEmpty();
-	}
-	
-	private boolean hasDisallowedEfferents(JavaPackage restrictedPackage, JavaPackage verifiedPackage) {
-		final Collection<JavaPackage> disallowedEfferents = restrictedPackage
-				.getEfferents();
-		final Collection<JavaPackage> actualEfferents = new HashSet<JavaPackage>(
-				verifiedPackage.getEfferents());
-		actualEfferents.retainAll(disallowedEfferents);
-		return !actualEfferents.isEmpty();
+		return rules;
 	}
 }
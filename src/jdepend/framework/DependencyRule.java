@@ -0,0 +1,74 @@
+package jdepend.framework;
+
+/**
+ * The <code>DependencyRule</code> class is a rule of a
+ * <code>DependencyRules</code> instance, allowing, forbidding, or
+ * restricting the dependencies of the packages matching a pattern upon
+ * the packages matching another.
+ */
+
+public class DependencyRule {
+
+    private final String from;
+    private final String to;
+    private final boolean allowed;
+    private final boolean restricting;
+
+
+    DependencyRule(String from, String to, boolean allowed,
+        boolean restricting) {
+        if (from.length() == 0 || to.length() == 0) {
+            throw new IllegalArgumentException(
+                "Invalid dependency rule: " + from + " -> " + to);
+        }
+        this.from = from;
+        this.to = to;
+        this.allowed = allowed;
+        this.restricting = restricting;
+    }
+
+    /**
+     * Returns the pattern of the depending packages.
+     *
+     * @return Package pattern.
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    /**
+     * Returns the pattern of the packages depended upon.
+     *
+     * @return Package pattern.
+     */
+    public String getTo() {
+        return to;
+    }
+
+    /**
+     * Indicates whether this rule allows, rather than forbids, the
+     * dependencies it matches.
+     *
+     * @return <code>true</code> if the dependencies are allowed.
+     */
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    /**
+     * Indicates whether this rule restricts the depending packages to
+     * the dependencies allowed by rules, as an <code>only</code> rule
+     * does.
+     *
+     * @return <code>true</code> if the depending packages are
+     *         restricted.
+     */
+    public boolean isRestricting() {
+        return restricting;
+    }
+
+    public String toString() {
+        return (restricting ? "only " : allowed ? "allow " : "forbid ") + 
+            from + " -> " + to;
+    }
+}
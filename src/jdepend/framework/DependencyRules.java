@@ -0,0 +1,292 @@
+package jdepend.framework;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>DependencyRules</code> class checks package dependencies
+ * against rules allowing, forbidding, or restricting the dependencies of
+ * the packages matching a pattern upon the packages matching another,
+ * and reports every dependency violating them.
+ * <p>
+ * Patterns are matched as by a <code>PackageFilter</code>, but against
+ * the whole package name, so <code>com.acme.**</code> is needed to match
+ * <code>com.acme</code> and its subpackages. A dependency violates the
+ * rules if a <code>forbid</code> rule matches it, or if an
+ * <code>only</code> rule matches the depending package but none of the
+ * <code>only</code> rules of that package matches the dependency, unless
+ * an <code>allow</code> rule matches it. An <code>allow</code> rule
+ * only makes exceptions to the other rules, and does not restrict what
+ * the depending packages may otherwise depend upon.
+ * <p>
+ * For example, the following rules let the <code>web</code> packages
+ * depend only upon the <code>service</code> and <code>java</code>
+ * packages, and forbid all packages but <code>service</code> to depend
+ * upon the <code>persistence</code> packages, while the
+ * <code>service</code> packages may depend upon any other package:
+ * <p>
+ * <blockquote>
+ * <pre>
+ * DependencyRules rules = new DependencyRules();
+ * rules.only("com.xyz.web.**", "com.xyz.service.**");
+ * rules.only("com.xyz.web.**", "java.**");
+ * rules.forbid("**", "com.xyz.persistence.**");
+ * rules.allow("com.xyz.service.**", "com.xyz.persistence.**");
+ * </pre>
+ * </blockquote>
+ * <p>
+ * The rules are compiled when first checked into pattern trees, and
+ * each package name into the sets of numbers of the rules matching it,
+ * so that a dependency is checked by comparing two sets, however many
+ * rules there are. Rules can be shared by threads once added.
+ */
+
+public class DependencyRules {
+
+    private final List rules;
+    private volatile Compiled compiled;
+
+
+    /**
+     * Constructs a <code>DependencyRules</code> instance without rules.
+     */
+    public DependencyRules() {
+        rules = new ArrayList();
+    }
+
+    /**
+     * Allows the packages matching the first pattern to depend upon the
+     * packages matching the second, even if other rules forbid it.
+     *
+     * @param from Pattern of the depending packages.
+     * @param to Pattern of the packages depended upon.
+     * @return Added rule.
+     */
+    public DependencyRule allow(String from, String to) {
+        return add(new DependencyRule(from, to, true, false));
+    }
+
+    /**
+     * Forbids the packages matching the first pattern to depend upon the
+     * packages matching the second, unless an <code>allow</code> rule
+     * allows it.
+     *
+     * @param from Pattern of the depending packages.
+     * @param to Pattern of the packages depended upon.
+     * @return Added rule.
+     */
+    public DependencyRule forbid(String from, String to) {
+        return add(new DependencyRule(from, to, false, false));
+    }
+
+    /**
+     * Restricts the packages matching the first pattern to depend only
+     * upon the packages matching the second, or matching the second
+     * pattern of another <code>only</code> rule of theirs, unless an
+     * <code>allow</code> rule allows it.
+     *
+     * @param from Pattern of the depending packages.
+     * @param to Pattern of the packages depended upon.
+     * @return Added rule.
+     */
+    public DependencyRule only(String from, String to) {
+        return add(new DependencyRule(from, to, true, true));
+    }
+
+    private DependencyRule add(DependencyRule rule) {
+        rules.add(rule);
+        compiled = null;
+        return rule;
+    }
+
+    /**
+     * Returns the rules, in the order in which they were added.
+     *
+     * @return Unmodifiable list of <code>DependencyRule</code> instances.
+     */
+    public List getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * Returns the rule violated by a dependency of the package with the
+     * first name upon the package with the second.
+     *
+     * @param from Name of the depending package.
+     * @param to Name of the package depended upon.
+     * @return Violated rule, or <code>null</code> if the dependency
+     *         follows the rules.
+     */
+    public DependencyRule getViolatedRule(String from, String to) {
+        Compiled current = getCompiled();
+        return current.getViolatedRule(current.getMatches(from),
+            current.getMatches(to));
+    }
+
+    /**
+     * Returns the dependencies of the packages of the specified graph
+     * which violate the rules.
+     *
+     * @param graph Package graph.
+     * @return List of <code>DependencyViolation</code> instances, in the
+     *         order of the depending packages in the graph.
+     */
+    public List check(PackageGraph graph) {
+
+        Compiled current = getCompiled();
+        Matches[] matches = new Matches[graph.size()];
+        for (int id = 0; id < graph.size(); id++) {
+            matches[id] = current.getMatches(graph.getPackage(id).getName());
+        }
+
+        List violations = new ArrayList();
+        for (int id = 0; id < graph.size(); id++) {
+            for (int i = 0; i < graph.getEfferentCount(id); i++) {
+                int efferent = graph.getEfferent(id, i);
+                DependencyRule rule = current.getViolatedRule(
+                    matches[id], matches[efferent]);
+                if (rule != null) {
+                    violations.add(new DependencyViolation(
+                        graph.getPackage(id), graph.getPackage(efferent),
+                        rule));
+                }
+            }
+        }
+
+        return violations;
+    }
+
+    /**
+     * Returns the dependencies of the specified packages, and upon them,
+     * which violate the rules.
+     *
+     * @param packages Collection of <code>JavaPackage</code> instances.
+     * @return List of <code>DependencyViolation</code> instances.
+     */
+    public List check(Collection packages) {
+
+        Set names = new HashSet();
+        for (Iterator i = packages.iterator(); i.hasNext();) {
+            names.add(((JavaPackage)i.next()).getName());
+        }
+
+        List violations = new ArrayList();
+        for (Iterator i = packages.iterator(); i.hasNext();) {
+            JavaPackage jPackage = (JavaPackage)i.next();
+            for (Iterator j = jPackage.getEfferents().iterator();
+                    j.hasNext();) {
+                check(jPackage, (JavaPackage)j.next(), violations);
+            }
+            for (Iterator j = jPackage.getAfferents().iterator();
+                    j.hasNext();) {
+                JavaPackage afferent = (JavaPackage)j.next();
+                if (!names.contains(afferent.getName())) {
+                    check(afferent, jPackage, violations);
+                }
+            }
+        }
+
+        return violations;
+    }
+
+    private void check(JavaPackage from, JavaPackage to, List violations) {
+        DependencyRule rule = getViolatedRule(from.getName(), to.getName());
+        if (rule != null) {
+            violations.add(new DependencyViolation(from, to, rule));
+        }
+    }
+
+    private Compiled getCompiled() {
+        Compiled current = compiled;
+        if (current == null) {
+            current = new Compiled(rules);
+            compiled = current;
+        }
+        return current;
+    }
+
+    /**
+     * The compiled rules, with the rules matching each package name
+     * checked so far.
+     */
+    private static class Compiled {
+
+        private final DependencyRule[] rules;
+        private final PackagePatterns fromPatterns;
+        private final PackagePatterns toPatterns;
+        private final BitSet allowing;
+        private final BitSet restricting;
+        private final Map matches;
+
+        Compiled(List rules) {
+
+            this.rules = (DependencyRule[])rules.toArray(
+                new DependencyRule[rules.size()]);
+            fromPatterns = new PackagePatterns();
+            toPatterns = new PackagePatterns();
+            allowing = new BitSet();
+            restricting = new BitSet();
+            matches = new ConcurrentHashMap();
+
+            for (int i = 0; i < this.rules.length; i++) {
+                fromPatterns.add(this.rules[i].getFrom(), i);
+                toPatterns.add(this.rules[i].getTo(), i);
+                allowing.set(i, this.rules[i].isAllowed());
+                restricting.set(i, this.rules[i].isRestricting());
+            }
+        }
+
+        Matches getMatches(String packageName) {
+            Matches match = (Matches)matches.get(packageName);
+            if (match == null) {
+                match = new Matches(fromPatterns.match(packageName),
+                    toPatterns.match(packageName), allowing, restricting);
+                matches.put(packageName, match);
+            }
+            return match;
+        }
+
+        DependencyRule getViolatedRule(Matches from, Matches to) {
+
+            if (from.allowing.intersects(to.targets)) {
+                return null;
+            }
+
+            if (from.forbidding.intersects(to.targets)) {
+                BitSet violated = (BitSet)from.forbidding.clone();
+                violated.and(to.targets);
+                return rules[violated.nextSetBit(0)];
+            }
+
+            if (!from.restricting.isEmpty()) {
+                return rules[from.restricting.nextSetBit(0)];
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * The numbers of the allowing, restricting and forbidding rules
+     * matching a package as the depending package, and of the rules
+     * matching it as the package depended upon.
+     */
+    private static class Matches {
+
+        private final BitSet allowing;
+        private final BitSet restricting;
+        private final BitSet forbidding;
+        private final BitSet targets;
+
+        Matches(BitSet sources, BitSet targets, BitSet allowingRules,
+            BitSet restrictingRules) {
+            allowing = (BitSet)sources.clone();
+            allowing.and(allowingRules);
+            restricting = (BitSet)sources.clone();
+            restricting.and(restrictingRules);
+            forbidding = sources;
+            forbidding.andNot(allowingRules);
+            this.targets = targets;
+        }
+    }
+}
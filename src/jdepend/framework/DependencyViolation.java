@@ -0,0 +1,77 @@
+package jdepend.framework;
+
+/**
+ * The <code>DependencyViolation</code> class is a package dependency
+ * which does not follow a <code>DependencyRules</code> instance, with the
+ * rule it violates and, if it was found while parsing, the class whose
+ * imports caused it.
+ */
+
+public class DependencyViolation {
+
+    private final JavaPackage from;
+    private final JavaPackage to;
+    private final DependencyRule rule;
+    private final JavaClass javaClass;
+
+
+    DependencyViolation(JavaPackage from, JavaPackage to,
+            DependencyRule rule) {
+        this(from, to, rule, null);
+    }
+
+    DependencyViolation(JavaPackage from, JavaPackage to,
+            DependencyRule rule, JavaClass javaClass) {
+        this.from = from;
+        this.to = to;
+        this.rule = rule;
+        this.javaClass = javaClass;
+    }
+
+    /**
+     * Returns the depending package.
+     *
+     * @return Package.
+     */
+    public JavaPackage getFrom() {
+        return from;
+    }
+
+    /**
+     * Returns the package depended upon.
+     *
+     * @return Package.
+     */
+    public JavaPackage getTo() {
+        return to;
+    }
+
+    /**
+     * Returns the violated rule: the rule forbidding the dependency, or
+     * an allowing rule of the depending package if none allows it.
+     *
+     * @return Dependency rule.
+     */
+    public DependencyRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Returns the class importing the package depended upon.
+     *
+     * @return Class, or <code>null</code> if the violation was found in
+     *         the dependencies between packages.
+     */
+    public JavaClass getJavaClass() {
+        return javaClass;
+    }
+
+    public String toString() {
+        String violation = 
+            from.getName() + " -> " + to.getName() + " (" + rule + ")";
+        if (javaClass != null) {
+            violation += " in " + javaClass.getName();
+        }
+        return violation;
+    }
+}
@@ -0,0 +1,435 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>DirectoryWalker</code> class walks directory trees depth-first
+ * and returns the files accepted by a <code>FileManager</code>.
+ * <p>
+ * Directories are listed with a <code>DirectoryStream</code>, and the
+ * attributes of each entry are read once, following symbolic links. A
+ * directory that is its own ancestor, through a symbolic link, is not
+ * walked again.
+ * <p>
+ * The package of the classes in a directory is derived from its path
+ * relative to the root that contains it. Directories of packages 
+ * rejected by the package filter of the <code>FileManager</code>, if 
+ * it filters by path, are not walked.
+ * <p>
+ * When sorted, the entries of each directory are returned in the order
+ * of their paths, so the files of a tree are returned in the order of
+ * their paths. When walking with several threads, the next few
+ * directories to be walked are listed ahead by worker threads, while the
+ * files are still returned in the same order as with a single thread.
+ * At most a few listings per thread are started ahead of the walk, so
+ * a tree is not listed faster than its files are taken.
+ */
+
+class DirectoryWalker {
+
+    private final FileManager fileManager;
+    private final boolean sorted;
+    private final int threads;
+    private final int lookAhead;
+
+
+    DirectoryWalker(FileManager fileManager, boolean sorted, int threads) {
+        this.fileManager = fileManager;
+        this.sorted = sorted;
+        this.threads = threads;
+        this.lookAhead = threads * 4;
+    }
+
+    /**
+     * Returns an iterator over the files in the specified roots. A root
+     * which is a file is returned as is.
+     *
+     * @param roots Directories or files.
+     * @return Iterator over <code>File</code> instances.
+     */
+    Iterator walk(List roots) {
+        return new Walk(roots);
+    }
+
+    /**
+     * Stops the specified walk if it is abandoned before all its files
+     * are returned, so that no further directories are listed for it.
+     *
+     * @param files Iterator returned by <code>walk</code>.
+     */
+    static void close(Iterator files) {
+        if (files instanceof Walk) {
+            ((Walk)files).close();
+        }
+    }
+
+    /**
+     * Returns the key by which the entries of a directory are sorted.
+     * The files in a directory follow the directory name and a separator
+     * in the order of paths, so directories sort as if their names ended
+     * with a separator.
+     */
+    static String getSortKey(String name, boolean isDirectory) {
+        return isDirectory ? name + File.separatorChar : name;
+    }
+
+    /**
+     * Returns the comparator of sort keys, which orders paths like
+     * <code>File.compareTo</code> does.
+     */
+    static Comparator getPathComparator() {
+        if (File.separatorChar == '\\') {
+            return String.CASE_INSENSITIVE_ORDER;
+        }
+        return new Comparator() {
+
+            public int compare(Object a, Object b) {
+                return ((String)a).compareTo((String)b);
+            }
+        };
+    }
+
+    /**
+     * An entry of a listed directory.
+     */
+    private static class Entry {
+
+        private final Path path;
+        private final String key;
+        private final boolean isDirectory;
+        private final Object fileKey;
+        private Ancestor ancestors;
+        private String packageName;
+        private Future listing;
+
+        Entry(Path path, BasicFileAttributes attributes) {
+            this.path = path;
+            this.isDirectory = attributes.isDirectory();
+            Path name = path.getFileName();
+            this.key = getSortKey(name == null ? path.toString()
+                : name.toString(), isDirectory);
+            this.fileKey = attributes.fileKey();
+        }
+    }
+
+    /**
+     * A directory on the path from a root to the directory being walked.
+     */
+    private static class Ancestor {
+
+        private final Object key;
+        private final Ancestor parent;
+
+        Ancestor(Object key, Ancestor parent) {
+            this.key = key;
+            this.parent = parent;
+        }
+
+        boolean contains(Object key) {
+            for (Ancestor a = this; a != null; a = a.parent) {
+                if (a.key.equals(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The listed entries of a directory being walked.
+     */
+    private static class Level {
+
+        private final List entries;
+        private int position;
+        private int scanned;
+
+        Level(List entries) {
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * A walk over the registered roots.
+     */
+    private class Walk implements Iterator {
+
+        private final Iterator roots;
+        private final LinkedList stack;
+        private ThreadPoolExecutor executor;
+        private int listings;
+        private File next;
+
+        Walk(List roots) {
+            this.roots = roots.iterator();
+            this.stack = new LinkedList();
+            if (threads > 1) {
+                executor = new ThreadPoolExecutor(threads, threads,
+                    1, TimeUnit.SECONDS, new LinkedBlockingQueue(),
+                    new ThreadFactory() {
+
+                        private int count;
+
+                        public synchronized Thread newThread(Runnable r) {
+                            Thread t = new Thread(r,
+                                "JDepend walker " + (++count));
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                executor.allowCoreThreadTimeOut(true);
+            }
+            advance();
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Object next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            File file = next;
+            advance();
+            return file;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void advance() {
+
+            while (true) {
+
+                if (stack.isEmpty()) {
+                    if (!roots.hasNext()) {
+                        break;
+                    }
+                    File root = (File)roots.next();
+                    if (root.isFile()) {
+                        next = root;
+                        return;
+                    }
+                    Path path = root.toPath();
+                    BasicFileAttributes attributes = readAttributes(path);
+                    if (attributes != null && attributes.isDirectory()) {
+                        Entry entry = new Entry(path, attributes);
+                        Object key = getKey(entry);
+                        if (key != null) {
+                            entry.ancestors = new Ancestor(key, null);
+                            entry.packageName = "";
+                            push(getListing(entry));
+                        }
+                    }
+                    continue;
+                }
+
+                Level level = (Level)stack.getLast();
+                if (level.position == level.entries.size()) {
+                    stack.removeLast();
+                    continue;
+                }
+
+                Entry entry = (Entry)level.entries.get(level.position++);
+                if (entry.isDirectory) {
+                    push(getListing(entry));
+                } else {
+                    next = entry.path.toFile();
+                    return;
+                }
+            }
+
+            close();
+        }
+
+        /**
+         * Stops the walk, discarding the listings started ahead.
+         */
+        void close() {
+            next = null;
+            stack.clear();
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Walks the specified entries of a directory next, and starts the
+         * listings of the directories which follow them, as far as the
+         * look-ahead allows.
+         */
+        private void push(List entries) {
+            stack.addLast(new Level(entries));
+            if (executor == null) {
+                return;
+            }
+            for (ListIterator i = stack.listIterator(stack.size());
+                    i.hasPrevious() && listings < lookAhead;) {
+                Level level = (Level)i.previous();
+                level.scanned = Math.max(level.scanned, level.position);
+                while (level.scanned < level.entries.size() && 
+                        listings < lookAhead) {
+                    Entry entry = (Entry)level.entries.get(level.scanned++);
+                    if (entry.isDirectory) {
+                        startListing(entry);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the accepted files and the subdirectories of the
+         * directory of the specified entry, waiting for the listing if it
+         * was started by a worker thread.
+         */
+        private List getListing(Entry directory) {
+            if (directory.listing == null) {
+                return list(directory);
+            }
+            listings--;
+            try {
+                return (List)directory.listing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Collections.EMPTY_LIST;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw (Error) cause;
+            }
+        }
+
+        /**
+         * Lists the accepted files and the subdirectories of the directory
+         * of the specified entry, leaving out the subdirectories which are
+         * also its ancestors.
+         */
+        private List list(Entry directory) {
+
+            List entries = new ArrayList();
+
+            DirectoryStream stream = null;
+            try {
+                stream = Files.newDirectoryStream(directory.path);
+                for (Iterator i = stream.iterator(); i.hasNext();) {
+                    Path path = (Path)i.next();
+                    BasicFileAttributes attributes = readAttributes(path);
+                    if (attributes == null) {
+                        continue;
+                    }
+                    String name = path.getFileName().toString();
+                    if (attributes.isDirectory()) {
+                        String packageName = getPackageName(directory, name);
+                        if (!fileManager.acceptPackageTree(packageName)) {
+                            continue;
+                        }
+                        Entry entry = new Entry(path, attributes);
+                        Object key = getKey(entry);
+                        if (key != null && !directory.ancestors.contains(key)) {
+                            entry.ancestors = 
+                                new Ancestor(key, directory.ancestors);
+                            entry.packageName = packageName;
+                            entries.add(entry);
+                        }
+                    } else if (attributes.isRegularFile() && fileManager
+                            .acceptFileName(name, directory.packageName)) {
+                        entries.add(new Entry(path, attributes));
+                    }
+                }
+            } catch (IOException e) {
+                // unreadable directories are skipped
+            } finally {
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+            }
+
+            if (sorted) {
+                final Comparator comparator = getPathComparator();
+                Collections.sort(entries, new Comparator() {
+
+                    public int compare(Object a, Object b) {
+                        return comparator.compare(((Entry)a).key, 
+                            ((Entry)b).key);
+                    }
+                });
+            }
+
+            return entries;
+        }
+
+        private void startListing(final Entry directory) {
+            FutureTask listing = new FutureTask(new Callable() {
+
+                public Object call() {
+                    return list(directory);
+                }
+            });
+            directory.listing = listing;
+            listings++;
+            executor.execute(listing);
+        }
+
+        /**
+         * Returns the name of the package stored in the specified
+         * subdirectory of the specified directory.
+         */
+        private String getPackageName(Entry directory, String name) {
+            if (directory.packageName.length() == 0) {
+                return name;
+            }
+            return directory.packageName + "." + name;
+        }
+
+        /**
+         * Returns the key identifying the directory of the specified
+         * entry, or <code>null</code> if it cannot be determined.
+         */
+        private Object getKey(Entry directory) {
+            if (directory.fileKey != null) {
+                return directory.fileKey;
+            }
+            try {
+                return directory.path.toRealPath();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>DirectoryWatcher</code> class watches directory trees and
+ * jar files for changes with a <code>WatchService</code>.
+ * <p>
+ * Every directory of a watched tree is registered, including the
+ * directories created while it is watched. Changes are reported in
+ * batches, once no further change was seen for a short while, so a
+ * compiler writing many class files causes a single batch.
+ */
+
+class DirectoryWatcher {
+
+    /**
+     * Time, in milliseconds, without changes which ends a batch.
+     */
+    private static final long QUIET_PERIOD = 100;
+
+    private final WatchService service;
+    private final Map directories;
+    private final Set trees;
+    private final Set jarFiles;
+
+
+    /**
+     * Constructs a <code>DirectoryWatcher</code> instance watching the
+     * specified directories and jar files.
+     *
+     * @param roots Directories or jar files.
+     * @throws IOException If the directories cannot be watched.
+     */
+    DirectoryWatcher(List<File> roots) throws IOException {
+        service = FileSystems.getDefault().newWatchService();
+        directories = new HashMap();
+        trees = new HashSet();
+        jarFiles = new HashSet();
+        try {
+            for (File root : roots) {
+                if (root.isDirectory()) {
+                    registerTree(root.getAbsoluteFile().toPath());
+                } else {
+                    Path path = root.getAbsoluteFile().toPath();
+                    jarFiles.add(path);
+                    register(path.getParent(), false);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for changes and returns the changed files. A created
+     * directory is returned with the files it contains, and a deleted
+     * directory is returned as is.
+     *
+     * @return Collection of <code>File</code> instances, or
+     *         <code>null</code> if the changes were not all seen, or
+     *         a watched jar file changed, so everything must be
+     *         analyzed again.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    Collection<File> take() throws InterruptedException {
+
+        Set<File> changed = new LinkedHashSet<File>();
+        boolean complete = true;
+
+        WatchKey key = service.take();
+        while (key != null) {
+            if (!poll(key, changed)) {
+                complete = false;
+            }
+            key = service.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+        }
+
+        return complete ? changed : null;
+    }
+
+    /**
+     * Stops watching.
+     */
+    void close() {
+        try {
+            service.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * Adds the files changed in the directory of the specified key.
+     *
+     * @return <code>false</code> if changes were lost, or a watched jar
+     *         file changed.
+     */
+    private boolean poll(WatchKey key, Set<File> changed) {
+
+        boolean complete = true;
+
+        Path directory = (Path)directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW ||
+                directory == null) {
+                complete = false;
+                continue;
+            }
+
+            Path path = directory.resolve((Path)event.context());
+            if (jarFiles.contains(path)) {
+                complete = false;
+            } else if (!trees.contains(key)) {
+                continue;
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                && Files.isDirectory(path)) {
+                try {
+                    changed.addAll(registerTree(path));
+                } catch (IOException e) {
+                    complete = false;
+                }
+            } else {
+                changed.add(path.toFile());
+            }
+        }
+
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+
+        return complete;
+    }
+
+    /**
+     * Registers the directories of the specified tree, and returns the
+     * files it contains.
+     */
+    private Collection<File> registerTree(Path root) throws IOException {
+
+        final Collection<File> files = new LinkedHashSet<File>();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+            public FileVisitResult preVisitDirectory(Path dir,
+                BasicFileAttributes attributes) throws IOException {
+                register(dir, true);
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile(Path file,
+                BasicFileAttributes attributes) {
+                files.add(file.toFile());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return files;
+    }
+
+    /**
+     * Registers the specified directory, which is part of a watched tree
+     * or the directory of a watched jar file.
+     */
+    private void register(Path directory, boolean tree) throws IOException {
+        WatchKey key = directory.register(service,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        directories.put(key, directory);
+        if (tree) {
+            trees.add(key);
+        }
+    }
+}
@@ -2,11 +2,16 @@ package jdepend.framework;
 
 import java.io.*;
 import java.util.*;
+import java.util.jar.*;
+import java.util.zip.*;
 
 /**
  * The <code>FileManager</code> class is responsible for extracting 
  * Java class files (<code>.class</code> files) from a collection of 
  * registered directories.
+ * <p>
+ * The directories are walked by a <code>DirectoryWalker</code>, 
+ * optionally with several threads.
  * 
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -14,13 +19,63 @@ import java.util.*;
 
 public class FileManager {
 
+    /**
+     * Directories of jar files holding the classes of web 
+     * applications and executable jars.
+     */
+    private static final String[] CLASS_ROOTS = { 
+        "WEB-INF/classes/", "BOOT-INF/classes/" };
+
+    /**
+     * Directory of multi-release jar files holding the classes 
+     * of specific Java versions.
+     */
+    private static final String VERSIONS_ROOT = "META-INF/versions/";
+
     private ArrayList directories;
     private boolean acceptInnerClasses;
+    private boolean sortFiles;
+    private int threads;
+    private PackageFilter filter;
+    private boolean filterByPath;
+    private int classCount;
+    private Collection countedFilters;
 
 
     public FileManager() {
         directories = new ArrayList();
         acceptInnerClasses = true;
+        sortFiles = true;
+        threads = 1;
+        filterByPath = false;
+        classCount = -1;
+    }
+
+    /**
+     * Sets the package filter applied to the paths of class files,
+     * so class files of filtered packages are never read.
+     * 
+     * @param filter Package filter, or <code>null</code> to extract
+     *        the class files of all packages.
+     */
+    public void setFilter(PackageFilter filter) {
+        this.filter = filter;
+        resetClassCount();
+    }
+
+    /**
+     * Determines whether class files are skipped when their path
+     * within a directory or jar file names a package rejected by the 
+     * package filter. This is disabled by default, and should only be
+     * enabled when class files are stored in directories named after
+     * their packages.
+     * 
+     * @param b <code>true</code> to filter class files by path;
+     *          <code>false</code> otherwise.
+     */
+    public void filterByPath(boolean b) {
+        filterByPath = b;
+        resetClassCount();
     }
 
     /**
@@ -31,6 +86,7 @@ public class FileManager {
      */
     public void acceptInnerClasses(boolean b) {
         acceptInnerClasses = b;
+        resetClassCount();
     }
 
     public void addDirectory(String name) throws IOException {
@@ -39,6 +95,7 @@ public class FileManager {
 
         if (directory.isDirectory() || acceptJarFile(directory)) {
             directories.add(directory);
+            resetClassCount();
         } else {
             throw new IOException("Invalid directory or JAR file: " + name);
         }
@@ -49,12 +106,17 @@ public class FileManager {
     }
 
     public boolean acceptClassFile(File file) {
-        if (!file.isFile()) {
-            return false;
-        }
-        return acceptClassFileName(file.getName());
+        return acceptClassFileName(file.getName()) && file.isFile();
     }
 
+    /**
+     * Indicates whether the class file with the specified name is 
+     * accepted. If the name is the name of a jar file entry, the package
+     * named by its path must also pass the package filter.
+     * 
+     * @param name File name or jar file entry name.
+     * @return <code>true</code> if the class file is accepted.
+     */
     public boolean acceptClassFileName(String name) {
 
         if (!acceptInnerClasses) {
@@ -67,68 +129,266 @@ public class FileManager {
             return false;
         }
 
+        int index = name.lastIndexOf('/');
+        if (index >= 0 && isFilteringByPath()) {
+            String packageName = getEntryPath(name.substring(0, index));
+            return acceptPackage(packageName.replace('/', '.'));
+        }
+
         return true;
     }
 
+    /**
+     * Returns the path of the jar file entry directory with the 
+     * specified name, relative to the root of its classes.
+     */
+    private String getEntryPath(String directory) {
+
+        for (int i = 0; i < CLASS_ROOTS.length; i++) {
+            if (directory.startsWith(CLASS_ROOTS[i])) {
+                directory = directory.substring(CLASS_ROOTS[i].length());
+            } else if (directory.equals(CLASS_ROOTS[i].substring(0, 
+                    CLASS_ROOTS[i].length() - 1))) {
+                directory = "";
+            }
+        }
+
+        if (directory.startsWith(VERSIONS_ROOT)) {
+            int index = directory.indexOf('/', VERSIONS_ROOT.length());
+            directory = index < 0 ? "" : directory.substring(index + 1);
+        }
+
+        return directory;
+    }
+
+    private boolean isFilteringByPath() {
+        return filterByPath && filter != null;
+    }
+
+    /**
+     * Indicates whether the classes of the package with the specified
+     * name, derived from their path, are accepted.
+     */
+    boolean acceptPackage(String packageName) {
+        if (!isFilteringByPath()) {
+            return true;
+        }
+        if (packageName.length() == 0) {
+            packageName = "Default";
+        }
+        return filter.accept(packageName);
+    }
+
+    /**
+     * Indicates whether the classes of the package with the specified
+     * name, or of any of its subpackages, may be accepted.
+     */
+    boolean acceptPackageTree(String packageName) {
+        return !isFilteringByPath() || filter.acceptSubpackages(packageName);
+    }
+
     public boolean acceptJarFile(File file) {
-        return isJar(file) || isZip(file) || isWar(file);
+        return isJarName(file.getName()) && file.isFile();
+    }
+
+    /**
+     * Determines whether the extracted files are sorted by path.
+     * 
+     * @param b <code>true</code> to extract files in the order of
+     *          their paths; <code>false</code> to extract them in the
+     *          order in which they are found.
+     */
+    public void sortFiles(boolean b) {
+        sortFiles = b;
+    }
+
+    /**
+     * Sets the number of threads listing the registered directories.
+     * 
+     * @param threads Number of threads; <code>1</code> to list 
+     *        directories on the calling thread.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                "Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
     }
 
     public Collection extractFiles() {
 
-        Collection files = new TreeSet();
+        Collection files = new ArrayList();
 
-        for (Iterator i = directories.iterator(); i.hasNext();) {
-            File directory = (File)i.next();
-            collectFiles(directory, files);
+        for (Iterator i = iterateFiles(); i.hasNext();) {
+            files.add(i.next());
         }
 
         return files;
     }
 
-    private void collectFiles(File directory, Collection files) {
+    /**
+     * Returns an iterator over the files of the registered directories,
+     * in the same order as the collection returned by 
+     * <code>extractFiles</code>. A directory is only listed when the
+     * iteration reaches it, or by a worker thread when listing with 
+     * several threads, so the first files are returned before the
+     * registered directories are completely walked.
+     * 
+     * @return Iterator over <code>File</code> instances.
+     */
+    public Iterator iterateFiles() {
+        return new DirectoryWalker(this, sortFiles, threads).walk(getRoots());
+    }
 
-        if (directory.isFile()) {
+    /**
+     * Returns the number of class files in the registered directories,
+     * including the accepted entries of jar files. The entries of a jar
+     * file are counted from its central directory, without reading them.
+     * <p>
+     * The count is kept until a directory is registered or the accepted
+     * class files change, so counting again is free.
+     * 
+     * @return Number of class files.
+     */
+    public synchronized int countClasses() {
 
-            addFile(directory, files);
+        if (classCount >= 0 && !isFilterChanged()) {
+            return classCount;
+        }
 
-        } else {
+        countedFilters = getFilterState();
 
-            String[] directoryFiles = directory.list();
+        int count = 0;
+        for (Iterator i = iterateFiles(); i.hasNext();) {
+            File file = (File)i.next();
+            if (isJarName(file.getName())) {
+                count += countClasses(file);
+            } else {
+                count++;
+            }
+        }
 
-            for (int i = 0; i < directoryFiles.length; i++) {
+        classCount = count;
+        return classCount;
+    }
 
-                File file = new File(directory, directoryFiles[i]);
-                if (acceptFile(file)) {
-                    addFile(file, files);
-                } else if (file.isDirectory()) {
-                    collectFiles(file, files);
+    /**
+     * Returns the number of accepted entries of the specified jar file, 
+     * or <code>0</code> if it cannot be read.
+     */
+    private int countClasses(File file) {
+
+        int count = 0;
+
+        try {
+            JarFile jarFile = new JarFile(file);
+            try {
+                Enumeration entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry e = (ZipEntry)entries.nextElement();
+                    if (acceptClassFileName(e.getName())) {
+                        count++;
+                    }
                 }
+            } finally {
+                jarFile.close();
             }
+        } catch (IOException e) {
+            return 0;
         }
+
+        return count;
+    }
+
+    /**
+     * Returns a description of the settings which determine the
+     * accepted entries of jar files.
+     */
+    String getConfiguration() {
+        Collection filters = getFilterState();
+        return "inner=" + acceptInnerClasses + 
+            (filters == null ? "" : ",path=" + filters);
+    }
+
+    private synchronized void resetClassCount() {
+        classCount = -1;
+    }
+
+    /**
+     * Indicates whether packages were added to the package filter since
+     * the class files were counted.
+     */
+    private boolean isFilterChanged() {
+        Collection filters = getFilterState();
+        return filters == null ? countedFilters != null
+            : !filters.equals(countedFilters);
     }
 
-    private void addFile(File f, Collection files) {
-        if (!files.contains(f)) {
-            files.add(f);
+    private Collection getFilterState() {
+        if (!isFilteringByPath()) {
+            return null;
         }
+        return new ArrayList(filter.getFilters());
     }
 
-    private boolean isWar(File file) {
-        return existsWithExtension(file, ".war");
+    /**
+     * Returns the registered directories and jar files, leaving out the
+     * ones contained by another registered directory.
+     */
+    List getDirectories() {
+        return getRoots();
     }
 
-    private boolean isZip(File file) {
-        return existsWithExtension(file, ".zip");
+    /**
+     * Returns the registered directories in the order of the files they
+     * contain, leaving out the ones contained by another directory.
+     */
+    private List getRoots() {
+
+        TreeMap sorted = new TreeMap(DirectoryWalker.getPathComparator());
+        for (Iterator i = directories.iterator(); i.hasNext();) {
+            File directory = (File)i.next();
+            sorted.put(DirectoryWalker.getSortKey(directory.getPath(), 
+                directory.isDirectory()), directory);
+        }
+
+        List roots = new ArrayList();
+        String previous = null;
+        for (Iterator i = sorted.entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry)i.next();
+            String key = (String)entry.getKey();
+            if (previous == null || !isContainedBy(key, previous)) {
+                roots.add(entry.getValue());
+                previous = key;
+            }
+        }
+
+        return roots;
     }
- 
-    private boolean isJar(File file) {
-        return existsWithExtension(file, ".jar");
+
+    private boolean isContainedBy(String key, String directoryKey) {
+        return directoryKey.charAt(directoryKey.length() - 1) == 
+            File.separatorChar && key.startsWith(directoryKey);
+    }
+
+    /**
+     * Indicates whether a regular file with the specified name, in the
+     * directory of the specified package, is a class file or a jar file
+     * to be extracted.
+     */
+    boolean acceptFileName(String name, String packageName) {
+        if (isJarName(name)) {
+            return true;
+        }
+        return acceptClassFileName(name) && acceptPackage(packageName);
     }
 
-    private boolean existsWithExtension(File file, String extension) {
-        return file.isFile() &&
-            file.getName().toLowerCase().endsWith(extension);
+    boolean isJarName(String name) {
+        String lowerCaseName = name.toLowerCase();
+        return lowerCaseName.endsWith(".jar") || 
+            lowerCaseName.endsWith(".zip") || 
+            lowerCaseName.endsWith(".war");
     }
 
 }
\ No newline at end of file
@@ -1,11 +1,27 @@
 package jdepend.framework;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * The <code>JDepend</code> class analyzes directories of Java class files 
@@ -107,11 +123,20 @@ import java.util.StringTokenizer;
 public class JDepend {
 
     private HashMap packages;
+    private PackageGraph graph;
+    private ReachabilityIndex reachability;
+    private HashSet addedPackages;
+    private HashMap classFiles;
+    private boolean analyzed;
+    private PackageRegistry registry;
     private FileManager fileManager;
     private PackageFilter filter;
-    private ClassFileParser parser;
+    private ByteBufferClassFileParser parser;
     private JavaClassBuilder builder;
-    private Collection components;
+    private ComponentMatcher components;
+    private DependencyRules failFastRules;
+    private int maxViolations;
+    private List violations;
 
     public JDepend() {
         this(new PackageFilter());
@@ -122,9 +147,15 @@ public class JDepend {
         setFilter(filter);
 
         this.packages = new HashMap();
+        this.addedPackages = new HashSet();
+        this.classFiles = new HashMap();
+        this.violations = new ArrayList();
+        this.registry = new PackageRegistry();
         this.fileManager = new FileManager();
+        this.fileManager.setFilter(filter);
 
-        this.parser = new ClassFileParser(filter);
+        this.parser = new ByteBufferClassFileParser(filter);
+        this.parser.setPackageRegistry(registry);
         this.builder = new JavaClassBuilder(parser, fileManager);
 
         PropertyConfigurator config = new PropertyConfigurator();
@@ -135,20 +166,334 @@ public class JDepend {
     /**
      * Analyzes the registered directories and returns the collection of
      * analyzed packages.
+     * <p>
+     * Analyzing again replaces the classes and dependencies of the 
+     * previous analysis.
      * 
      * @return Collection of analyzed packages.
      */
     public Collection analyze() {
 
-        Collection classes = builder.build();
-        
-        for (Iterator i = classes.iterator(); i.hasNext();) {
-            analyzeClass((JavaClass)i.next());
+        if (analyzed) {
+            reset();
+        }
+        analyzed = true;
+        violations.clear();
+
+        if (builder.getThreads() > 1) {
+            analyzeConcurrently();
+        } else {
+            builder.build(new JavaClassBuilder.ClassFileListener() {
+
+                public void onParsedJavaClass(JavaClass parsedClass) {
+                    checkClass(parsedClass);
+                    analyzeClass(parsedClass);
+                }
+
+                public void onParsedClassFile(File classFile, 
+                        JavaClass parsedClass) {
+                    checkClass(parsedClass);
+                    if (analyzeClass(parsedClass) != null) {
+                        classFiles.put(classFile.getAbsolutePath(), 
+                            parsedClass);
+                    }
+                }
+            });
         }
 
+        graph = new PackageGraph(getPackages());
+
+        saveParseCache();
+
         return getPackages();
     }
 
+    /**
+     * Analyzes the classes on the threads parsing them, as soon as they 
+     * are parsed, and then adds them and their dependencies to the 
+     * analyzed packages, each package on a thread of its own, so that the
+     * analyzed packages are the same as when analyzing the classes on the
+     * calling thread. Only the classes handed over are added, leaving out
+     * the classes of files which could not be parsed, and of files parsed
+     * after the analysis was stopped, and the classes handed over without
+     * being analyzed are analyzed again on the calling thread.
+     */
+    private void analyzeConcurrently() {
+
+        final ConcurrentAnalysis analysis = new ConcurrentAnalysis();
+        final List handedOver = new ArrayList();
+
+        builder.build(new JavaClassBuilder.ConcurrentClassListener() {
+
+            public void onBuiltJavaClass(JavaClass builtClass, long order) {
+                checkClass(builtClass);
+                analysis.analyzeClass(builtClass, order);
+            }
+
+            public void onParsedJavaClass(JavaClass parsedClass) {
+                handedOver.add(parsedClass);
+            }
+
+            public void onParsedClassFile(File classFile, 
+                    JavaClass parsedClass) {
+                handedOver.add(parsedClass);
+                if (getFilter().accept(parsedClass.getPackageName())) {
+                    classFiles.put(classFile.getAbsolutePath(), parsedClass);
+                }
+            }
+        });
+
+        Set analyzed = analysis.apply(handedOver, builder.getThreads());
+        for (Iterator i = handedOver.iterator(); i.hasNext();) {
+            JavaClass handedOverClass = (JavaClass)i.next();
+            if (!analyzed.contains(handedOverClass)) {
+                analyzeClass(handedOverClass);
+            }
+        }
+    }
+
+    /**
+     * Analyzes the specified changed class files again, updating the
+     * classes, afferents, and efferents of the analyzed packages in place.
+     * A class file which no longer exists is removed from the analysis,
+     * as are the class files in a directory which no longer exists.
+     * <p>
+     * If a jar file is changed, the registered directories are analyzed 
+     * again.
+     * 
+     * @param files Changed class files.
+     * @return Collection of packages whose classes, afferents, or 
+     *         efferents changed.
+     */
+    public Collection update(Collection files) {
+
+        Map previousEfferents = new HashMap();
+        Set changed = new LinkedHashSet();
+
+        for (Iterator i = expandFiles(files).iterator(); i.hasNext();) {
+
+            File file = (File)i.next();
+            if (fileManager.isJarName(file.getName())) {
+                return analyze();
+            }
+
+            JavaClass removed = (JavaClass)classFiles.remove(
+                file.getAbsolutePath());
+            if (removed != null) {
+                JavaPackage jPackage = getPackage(
+                    toComponent(removed.getPackageName()));
+                if (jPackage != null) {
+                    rememberEfferents(jPackage, previousEfferents);
+                    jPackage.removeClass(removed);
+                }
+            }
+
+            if (fileManager.acceptClassFile(file)) {
+                try {
+                    updateClasses(file, builder.buildClasses(file), 
+                        previousEfferents);
+                } catch (IOException ioe) {
+                    System.err.println("\n" + ioe.getMessage());
+                }
+            }
+        }
+
+        for (Iterator i = previousEfferents.entrySet().iterator(); 
+                i.hasNext();) {
+            Map.Entry entry = (Map.Entry)i.next();
+            JavaPackage jPackage = (JavaPackage)entry.getKey();
+            changed.add(jPackage);
+            updateEfferents(jPackage, (Collection)entry.getValue(), changed);
+        }
+
+        for (Iterator i = changed.iterator(); i.hasNext();) {
+            JavaPackage jPackage = (JavaPackage)i.next();
+            if (jPackage.getClassCount() == 0 && 
+                jPackage.getAfferents().isEmpty() &&
+                jPackage.getEfferents().isEmpty() &&
+                !addedPackages.contains(jPackage.getName())) {
+                packages.remove(jPackage.getName());
+            }
+        }
+
+        graph = new PackageGraph(getPackages());
+
+        saveParseCache();
+
+        return changed;
+    }
+
+    /**
+     * Analyzes the registered directories whenever their class files 
+     * change, until the calling thread is interrupted. Only the changed
+     * class files are analyzed again, as by <code>update</code>, after 
+     * which the specified listener is notified. 
+     * <p>
+     * The changes are those made after this method is called, to the
+     * packages of the previous analysis.
+     * 
+     * @param listener Listener notified of the changed packages.
+     * @throws IOException If the registered directories cannot be
+     *         watched.
+     */
+    public void watch(WatchListener listener) throws IOException {
+
+        DirectoryWatcher watcher = 
+            new DirectoryWatcher(fileManager.getDirectories());
+        try {
+
+            while (true) {
+
+                Collection files;
+                try {
+                    files = watcher.take();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                Collection changed = 
+                    files == null ? analyze() : update(files);
+                if (!changed.isEmpty()) {
+                    listener.onPackagesChanged(changed);
+                }
+            }
+
+        } finally {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Returns the specified files, replacing existing directories with 
+     * the class files they contain, and removed directories with the
+     * analyzed class files they contained.
+     */
+    private Collection expandFiles(Collection files) {
+
+        Collection expanded = new LinkedHashSet();
+
+        for (Iterator i = files.iterator(); i.hasNext();) {
+            File file = (File)i.next();
+            if (file.isDirectory()) {
+                expanded.addAll(listClassFiles(file));
+            } else if (file.exists() || 
+                fileManager.acceptClassFileName(file.getName()) ||
+                fileManager.isJarName(file.getName())) {
+                expanded.add(file);
+            } else {
+                String prefix = file.getAbsolutePath() + File.separator;
+                for (Iterator j = classFiles.keySet().iterator(); 
+                        j.hasNext();) {
+                    String path = (String)j.next();
+                    if (path.startsWith(prefix)) {
+                        expanded.add(new File(path));
+                    }
+                }
+            }
+        }
+
+        return expanded;
+    }
+
+    private Collection listClassFiles(File directory) {
+        Collection files = new ArrayList();
+        File[] contents = directory.listFiles();
+        if (contents != null) {
+            for (int i = 0; i < contents.length; i++) {
+                if (contents[i].isDirectory()) {
+                    files.addAll(listClassFiles(contents[i]));
+                } else {
+                    files.add(contents[i]);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void updateClasses(File classFile, Collection classes, 
+            Map previousEfferents) {
+
+        for (Iterator i = classes.iterator(); i.hasNext();) {
+
+            JavaClass clazz = (JavaClass)i.next();
+            
+            JavaPackage jPackage = getPackage(
+                toComponent(clazz.getPackageName()));
+            if (jPackage != null) {
+                rememberEfferents(jPackage, previousEfferents);
+                jPackage.removeClass(clazz);
+            }
+
+            jPackage = analyzeClass(clazz);
+            if (jPackage != null) {
+                rememberEfferents(jPackage, previousEfferents);
+                classFiles.put(classFile.getAbsolutePath(), clazz);
+            }
+        }
+    }
+
+    /**
+     * Remembers the efferents of the specified package before its 
+     * classes change. A package which was not analyzed before had no
+     * efferents.
+     */
+    private void rememberEfferents(JavaPackage jPackage, 
+            Map previousEfferents) {
+        if (!previousEfferents.containsKey(jPackage)) {
+            previousEfferents.put(jPackage, 
+                new ArrayList(jPackage.getEfferents()));
+        }
+    }
+
+    /**
+     * Makes the efferents of the specified package those imported by its
+     * classes, adding the packages whose afferents change to the 
+     * specified set.
+     */
+    private void updateEfferents(JavaPackage jPackage, 
+            Collection previous, Set changed) {
+
+        Set imported = new HashSet();
+        for (Iterator i = jPackage.getClasses().iterator(); i.hasNext();) {
+            JavaClass clazz = (JavaClass)i.next();
+            for (Iterator j = clazz.getImportedPackages().iterator(); 
+                    j.hasNext();) {
+                imported.add(addImportedPackage((JavaPackage)j.next()));
+            }
+        }
+
+        List efferents = new ArrayList(jPackage.getEfferents());
+        for (Iterator i = efferents.iterator(); i.hasNext();) {
+            JavaPackage efferent = (JavaPackage)i.next();
+            if (!imported.contains(efferent)) {
+                jPackage.removeEfferent(efferent);
+                efferent.removeAfferent(jPackage);
+                changed.add(efferent);
+            } else if (!previous.contains(efferent)) {
+                changed.add(efferent);
+            }
+        }
+    }
+
+    /**
+     * Discards the classes and dependencies of the previous analysis,
+     * keeping the packages added to it.
+     */
+    private void reset() {
+
+        for (Iterator i = packages.values().iterator(); i.hasNext();) {
+            JavaPackage jPackage = (JavaPackage)i.next();
+            jPackage.removeClasses();
+            jPackage.setAfferents(new ArrayList());
+            jPackage.setEfferents(new ArrayList());
+        }
+
+        packages.keySet().retainAll(addedPackages);
+        classFiles.clear();
+        graph = null;
+    }
+
     /**
      * Adds the specified directory name to the collection of directories to be
      * analyzed.
@@ -161,17 +506,19 @@ public class JDepend {
     }
     
     /**
-     * Sets the list of components.
+     * Sets the list of components. A package belongs to the longest
+     * component of which it is a subpackage.
      * 
      * @param components Comma-separated list of components.
      */
     public void setComponents(String components) {
-        this.components = new ArrayList();
+        Collection names = new ArrayList();
         StringTokenizer st = new StringTokenizer(components, ",");
         while (st.hasMoreTokens()) {
             String component = st.nextToken();
-            this.components.add(component);
+            names.add(component);
         }
+        this.components = new ComponentMatcher(names);
     }
 
     /**
@@ -184,6 +531,101 @@ public class JDepend {
         fileManager.acceptInnerClasses(b);
     }
 
+    /**
+     * Sets the number of threads listing directories and parsing class 
+     * files. The analyzed packages do not depend on the number of 
+     * threads.
+     * 
+     * @param threads Number of threads; <code>1</code> to parse 
+     *        class files on the calling thread.
+     */
+    public void setThreads(int threads) {
+        fileManager.setThreads(threads);
+        builder.setThreads(threads);
+    }
+
+    /**
+     * Determines whether class files are analyzed in the order of their
+     * paths. Otherwise, they are analyzed in the order in which they are
+     * found, which may vary from one analysis to the next, as may the 
+     * order of the afferents and efferents of the analyzed packages.
+     * 
+     * @param b <code>true</code> to analyze class files in the order
+     *          of their paths; <code>false</code> otherwise.
+     */
+    public void sortFiles(boolean b) {
+        fileManager.sortFiles(b);
+    }
+
+    /**
+     * Sets the cache of parsed classes. Classes which did not change
+     * since a previous analysis are read from the cache instead of being
+     * parsed again, and the cache is saved after each analysis.
+     * 
+     * @param cache Parse cache, or <code>null</code> to parse all classes.
+     */
+    public void setParseCache(ParseCache cache) {
+        builder.setParseCache(cache);
+    }
+
+    public ParseCache getParseCache() {
+        return builder.getParseCache();
+    }
+
+    /**
+     * Sets the store of jar file summaries. Jar files which were analyzed
+     * before, by this or any other analysis sharing the store, are not 
+     * opened again: the packages they define, with their classes and 
+     * imported packages, are read from their summaries.
+     * 
+     * @param summaries Summary store, or <code>null</code> to analyze
+     *        all jar files.
+     */
+    public void setJarSummaryStore(JarSummaryStore summaries) {
+        builder.setJarSummaryStore(summaries);
+    }
+
+    private void saveParseCache() {
+        ParseCache cache = builder.getParseCache();
+        if (cache != null) {
+            try {
+                cache.save();
+            } catch (IOException ioe) {
+                System.err.println("\n" + ioe.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Determines whether class files of packages rejected by the package
+     * filter are skipped before they are parsed, judging by their path
+     * within a directory or jar file. This is disabled by default, and
+     * should only be enabled when class files are stored in directories
+     * named after their packages.
+     * 
+     * @param b <code>true</code> to skip class files by path;
+     *          <code>false</code> to parse all class files.
+     */
+    public void filterByPath(boolean b) {
+        fileManager.filterByPath(b);
+    }
+
+    /**
+     * Determines whether package dependencies are collected from the
+     * constant pool of each class file only, skipping fields, methods,
+     * and attributes.
+     * <p>
+     * This is considerably faster, but does not report dependencies
+     * which only appear in declared fields, method signatures, or
+     * annotations, nor the source file names of classes.
+     * 
+     * @param b <code>true</code> to scan the constant pool only;
+     *          <code>false</code> to parse complete class files.
+     */
+    public void useFastDependencyScan(boolean b) {
+        parser.useFastDependencyScan(b);
+    }
+
     /**
      * Returns the collection of analyzed packages.
      * 
@@ -193,6 +635,80 @@ public class JDepend {
         return packages.values();
     }
 
+    /**
+     * Returns the graph of the dependencies between the analyzed packages,
+     * which the analyzed packages read their afferents and efferents from.
+     * The analyzed packages are numbered first, in the order in which 
+     * they are returned by <code>getPackages()</code>.
+     * <p>
+     * The graph is built at the end of each analysis, and again when it
+     * is requested after packages were added or changed.
+     * 
+     * @return Package graph.
+     */
+    public PackageGraph getPackageGraph() {
+        if (graph == null || !graph.isCurrent()) {
+            graph = new PackageGraph(getPackages());
+        }
+        return graph;
+    }
+
+    /**
+     * Returns the current metrics of the analyzed packages, indexed by 
+     * their numbers in the package graph.
+     * 
+     * @return Package metrics.
+     */
+    public PackageMetrics getPackageMetrics() {
+        return new PackageMetrics(getPackageGraph());
+    }
+
+    /**
+     * Returns the current metrics of each package name prefix of the
+     * analyzed packages, as if the prefixes of each depth were
+     * components.
+     *
+     * @return Package roll-up.
+     */
+    public PackageRollup getPackageRollup() {
+        return new PackageRollup(getPackageGraph());
+    }
+
+    /**
+     * Returns the index answering whether an analyzed package depends
+     * upon another, directly or through other packages. The index is
+     * built when it is first requested after an analysis, or after 
+     * packages were added or changed.
+     * 
+     * @return Reachability index of the package graph.
+     */
+    public ReachabilityIndex getReachabilityIndex() {
+        PackageGraph current = getPackageGraph();
+        if (reachability == null || reachability.getGraph() != current) {
+            reachability = new ReachabilityIndex(current);
+        }
+        return reachability;
+    }
+
+    /**
+     * Indicates whether the analyzed package with the specified name
+     * depends upon the other, directly or through other packages.
+     * 
+     * @param from Name of the depending package.
+     * @param to Name of the package depended upon.
+     * @return <code>true</code> if both packages were analyzed and
+     *         <code>from</code> depends upon <code>to</code>.
+     */
+    public boolean dependsTransitively(String from, String to) {
+        JavaPackage fromPackage = getPackage(from);
+        JavaPackage toPackage = getPackage(to);
+        if (fromPackage == null || toPackage == null) {
+            return false;
+        }
+        return getReachabilityIndex().dependsTransitively(
+            fromPackage, toPackage);
+    }
+
     /**
      * Returns the analyzed package of the specified name.
      * 
@@ -260,6 +776,72 @@ public class JDepend {
 		return directive.followsDirective(getPackages());
 	}
 
+    /**
+     * Checks the imports of each class against the specified rules as
+     * soon as the class is parsed, and stops the analysis once the 
+     * specified number of violations is found, so that a violation is
+     * reported without parsing all classes. The violations are returned
+     * by <code>getViolations()</code>, and the packages of an analysis 
+     * stopped early hold the classes analyzed until then.
+     * <p>
+     * The rules are checked against the names of the packages of the
+     * classes, rather than those of their components. When parsing with
+     * several threads, the violations are found in the order in which 
+     * the classes are parsed, which may vary from one analysis to the 
+     * next.
+     * 
+     * @param rules Dependency rules; <code>null</code> to check no rules
+     *        while parsing.
+     * @param maxViolations Number of violations stopping the analysis;
+     *        <code>0</code> to analyze all classes.
+     */
+    public void setFailFast(DependencyRules rules, int maxViolations) {
+        if (maxViolations < 0) {
+            throw new IllegalArgumentException(
+                "Invalid maximum number of violations: " + maxViolations);
+        }
+        this.failFastRules = rules;
+        this.maxViolations = maxViolations;
+    }
+
+    /**
+     * Checks the imports of each class against the specified 
+     * proscription as soon as the class is parsed, and stops the analysis
+     * once the specified number of violations is found.
+     * 
+     * @param proscription Dependency proscription.
+     * @param maxViolations Number of violations stopping the analysis;
+     *        <code>0</code> to analyze all classes.
+     * @see #setFailFast(DependencyRules, int)
+     */
+    public void setFailFast(DependencyProscription proscription, 
+            int maxViolations) {
+        setFailFast(proscription.getRules(), maxViolations);
+    }
+
+    /**
+     * Returns the violations of the fail-fast rules found by the last
+     * analysis, each with the class whose imports caused it.
+     * 
+     * @return List of <code>DependencyViolation</code> instances.
+     */
+    public List getViolations() {
+        synchronized (violations) {
+            return new ArrayList(violations);
+        }
+    }
+
+    /**
+     * Returns the dependencies between the analyzed packages which
+     * violate the specified rules.
+     * 
+     * @param rules Dependency rules.
+     * @return List of <code>DependencyViolation</code> instances.
+     */
+    public List checkRules(DependencyRules rules) {
+        return rules.check(getPackageGraph());
+    }
+
     /**
      * Registers the specified parser listener.
      * 
@@ -277,24 +859,51 @@ public class JDepend {
      * @return Added Java package.
      */
     public JavaPackage addPackage(String name) {
+        JavaPackage pkg = analyzedPackage(name);
+        addedPackages.add(pkg.getName());
+        return pkg;
+    }
+
+    /**
+     * Returns the analyzed package, or component, containing the 
+     * package with the specified name, adding it if it was not 
+     * analyzed yet.
+     */
+    private JavaPackage analyzedPackage(String name) {
         name = toComponent(name);
         JavaPackage pkg = (JavaPackage)packages.get(name);
         if (pkg == null) {
-            pkg = new JavaPackage(name);
-            addPackage(pkg);
+            pkg = registry.getPackage(name);
+            packages.put(name, pkg);
+            graph = null;
         }
 
         return pkg;
     }
 
+    /**
+     * Adds the analyzed package for the specified canonical package.
+     * Unless packages are grouped into components, it is the canonical
+     * package itself, so no package is created for it.
+     */
+    private JavaPackage addImportedPackage(JavaPackage pkg) {
+        if (components != null) {
+            return analyzedPackage(pkg.getName());
+        }
+
+        JavaPackage analyzed = (JavaPackage)packages.get(pkg.getName());
+        if (analyzed == null) {
+            packages.put(pkg.getName(), pkg);
+            analyzed = pkg;
+            graph = null;
+        }
+
+        return analyzed;
+    }
+
     private String toComponent(String packageName) {
         if (components != null) {
-            for (Iterator i = components.iterator(); i.hasNext();) {
-                String component = (String)i.next();
-                if (packageName.startsWith(component + ".")) {
-                    return component;
-                }
-            }
+            return components.toComponent(packageName);
         }
         return packageName;
     }
@@ -319,9 +928,12 @@ public class JDepend {
      * @param pkg Java package.
      */
     public void addPackage(JavaPackage pkg) {
-        if (!packages.containsValue(pkg)) {
+        if (!packages.containsKey(pkg.getName())) {
             packages.put(pkg.getName(), pkg);
+            registry.addPackage(pkg);
+            graph = null;
         }
+        addedPackages.add(pkg.getName());
     }
 
     public PackageFilter getFilter() {
@@ -336,25 +948,360 @@ public class JDepend {
         if (parser != null) {
             parser.setFilter(filter);
         }
+        if (fileManager != null) {
+            fileManager.setFilter(filter);
+        }
         this.filter = filter;
     }
 
-    private void analyzeClass(JavaClass clazz) {
+    /**
+     * Adds the specified class to its analyzed package, unless its 
+     * package is filtered, and returns the package.
+     */
+    private JavaPackage analyzeClass(JavaClass clazz) {
 
         String packageName = clazz.getPackageName();
 
         if (!getFilter().accept(packageName)) {
-            return;
+            return null;
         }
 
-        JavaPackage clazzPackage = addPackage(packageName);
+        JavaPackage clazzPackage = analyzedPackage(packageName);
         clazzPackage.addClass(clazz);
 
         Collection imports = clazz.getImportedPackages();
         for (Iterator i = imports.iterator(); i.hasNext();) {
             JavaPackage importedPackage = (JavaPackage)i.next();
-            importedPackage = addPackage(importedPackage.getName());
+            importedPackage = addImportedPackage(importedPackage);
             clazzPackage.dependsUpon(importedPackage);
         }
+
+        return clazzPackage;
+    }
+
+    /**
+     * Checks the imports of the specified class against the fail-fast 
+     * rules, stopping the analysis once the maximum number of violations
+     * is found.
+     */
+    private void checkClass(JavaClass clazz) {
+
+        String packageName = clazz.getPackageName();
+        if (failFastRules == null || !getFilter().accept(packageName)) {
+            return;
+        }
+
+        for (Iterator i = clazz.getImportedPackages().iterator(); 
+                i.hasNext();) {
+            JavaPackage imported = (JavaPackage)i.next();
+            if (imported.getName().equals(packageName)) {
+                continue;
+            }
+            DependencyRule rule = 
+                failFastRules.getViolatedRule(packageName, imported.getName());
+            if (rule != null) {
+                synchronized (violations) {
+                    if (maxViolations > 0 && 
+                        violations.size() == maxViolations) {
+                        return;
+                    }
+                    violations.add(new DependencyViolation(
+                        registry.getPackage(packageName), imported, rule,
+                        clazz));
+                    if (violations.size() == maxViolations) {
+                        builder.stop();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The <code>ConcurrentAnalysis</code> class collects the analyzed 
+     * packages, classes, and dependencies of classes analyzed by several 
+     * threads at once.
+     * <p>
+     * Packages are looked up in a concurrent map, and each package keeps
+     * its classes, and the dependencies upon it, in concurrent queues of
+     * its own, so threads contend only when analyzing classes of the same
+     * package. Along with each class and dependency, its position in the
+     * order of the classes is kept, so that each package can then add 
+     * them, independently of the others, in the order in which a single 
+     * thread would have added them.
+     */
+    private class ConcurrentAnalysis {
+
+        /**
+         * Number of bits of the position of an occurrence taken by the
+         * position of an imported package among the imports of a class.
+         */
+        private static final int IMPORT_SHIFT = 12;
+
+        private final ConcurrentHashMap nodes;
+        private final ConcurrentLinkedQueue analyzed;
+
+
+        ConcurrentAnalysis() {
+            nodes = new ConcurrentHashMap();
+            analyzed = new ConcurrentLinkedQueue();
+        }
+
+        /**
+         * Analyzes the specified class at the specified position.
+         */
+        void analyzeClass(JavaClass clazz, long order) {
+
+            analyzed.add(clazz);
+
+            String packageName = clazz.getPackageName();
+            if (!getFilter().accept(packageName)) {
+                return;
+            }
+
+            long occurrence = order << IMPORT_SHIFT;
+            Node node = getNode(toComponent(packageName), null);
+
+            Collection imports = clazz.getImportedPackages();
+            Node[] efferents = new Node[imports.size()];
+            int maxImport = (1 << IMPORT_SHIFT) - 1;
+            int position = 0;
+            int index = 0;
+            for (Iterator i = imports.iterator(); i.hasNext();) {
+                JavaPackage imported = (JavaPackage)i.next();
+                position = Math.min(position + 1, maxImport);
+                Node efferent = components != null ? 
+                    getNode(toComponent(imported.getName()), null) :
+                    getNode(imported.getName(), imported);
+                efferents[index++] = efferent;
+                if (efferent != node) {
+                    efferent.afferents.add(new Occurrence(
+                        occurrence + position, clazz, node));
+                }
+            }
+
+            node.classes.add(new Occurrence(occurrence, clazz, efferents));
+        }
+
+        /**
+         * Returns the node of the package with the specified name, adding
+         * the specified package, or the registered package, if the name
+         * is new.
+         * <p>
+         * The analyzed packages are read without synchronization, as they
+         * only change before the classes are built, and after the builder
+         * has stopped all its threads.
+         */
+        private Node getNode(String name, JavaPackage jPackage) {
+            Node node = (Node)nodes.get(name);
+            if (node == null) {
+                JavaPackage analyzedPackage = (JavaPackage)packages.get(name);
+                boolean added = analyzedPackage == null;
+                if (added) {
+                    analyzedPackage = jPackage != null ? 
+                        jPackage : registry.getPackage(name);
+                }
+                node = new Node(analyzedPackage, added);
+                Node previous = (Node)nodes.putIfAbsent(name, node);
+                if (previous != null) {
+                    node = previous;
+                }
+            }
+            return node;
+        }
+
+        /**
+         * Adds the classes handed over, and their dependencies, to the 
+         * packages using the specified number of threads, and then adds 
+         * the new packages to the analyzed packages in the order of their
+         * first occurrence.
+         * 
+         * @return Set of the analyzed classes.
+         */
+        Set apply(List handedOver, int threads) {
+
+            final Set handedOverClasses = 
+                Collections.newSetFromMap(new IdentityHashMap());
+            handedOverClasses.addAll(handedOver);
+
+            final List nodeList = new ArrayList(nodes.values());
+            List tasks = new ArrayList();
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                final int step = threads;
+                tasks.add(new Callable() {
+
+                    public Object call() {
+                        for (int i = first; i < nodeList.size(); i += step) {
+                            ((Node)nodeList.get(i)).apply(handedOverClasses);
+                        }
+                        return null;
+                    }
+                });
+            }
+            invokeAll(tasks, threads);
+
+            List newNodes = new ArrayList();
+            for (Iterator i = nodeList.iterator(); i.hasNext();) {
+                Node node = (Node)i.next();
+                if (node.added && node.first != Long.MAX_VALUE) {
+                    newNodes.add(node);
+                }
+            }
+            Collections.sort(newNodes);
+            for (Iterator i = newNodes.iterator(); i.hasNext();) {
+                JavaPackage jPackage = ((Node)i.next()).jPackage;
+                packages.put(jPackage.getName(), jPackage);
+                graph = null;
+            }
+
+            Set analyzedClasses = 
+                Collections.newSetFromMap(new IdentityHashMap());
+            analyzedClasses.addAll(analyzed);
+            return analyzedClasses;
+        }
+
+        private void invokeAll(List tasks, final int threads) {
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+
+                    private int count;
+
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, 
+                            "JDepend analysis " + (++count));
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+            try {
+                for (Iterator i = executor.invokeAll(tasks).iterator(); 
+                        i.hasNext();) {
+                    ((Future)i.next()).get();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof Error) {
+                    throw (Error)cause;
+                }
+                throw (RuntimeException)cause;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * An analyzed package, with the occurrences of its classes and of the
+     * dependencies upon it.
+     */
+    private static class Node implements Comparable {
+
+        private final JavaPackage jPackage;
+        private final boolean added;
+        private final ConcurrentLinkedQueue classes;
+        private final ConcurrentLinkedQueue afferents;
+        private long first;
+
+        Node(JavaPackage jPackage, boolean added) {
+            this.jPackage = jPackage;
+            this.added = added;
+            this.classes = new ConcurrentLinkedQueue();
+            this.afferents = new ConcurrentLinkedQueue();
+            this.first = Long.MAX_VALUE;
+        }
+
+        /**
+         * Adds the specified classes of this package, and their 
+         * dependencies, to the package, in the order of their occurrences,
+         * and finds the first occurrence of the package.
+         */
+        void apply(Set handedOver) {
+
+            List packageClasses = getOccurrences(classes, handedOver);
+            List dependencies = getOccurrences(afferents, handedOver);
+
+            Collection efferents = jPackage.getEfferents();
+            Set newEfferents = new LinkedHashSet(efferents);
+            for (Iterator i = packageClasses.iterator(); i.hasNext();) {
+                Occurrence occurrence = (Occurrence)i.next();
+                first = Math.min(first, occurrence.position);
+                jPackage.addClass(occurrence.jClass);
+                for (int j = 0; j < occurrence.efferents.length; j++) {
+                    if (occurrence.efferents[j] != this) {
+                        newEfferents.add(occurrence.efferents[j].jPackage);
+                    }
+                }
+            }
+            if (newEfferents.size() > efferents.size()) {
+                jPackage.setEfferents(newEfferents);
+            }
+
+            Collection afferents = jPackage.getAfferents();
+            Set newAfferents = new LinkedHashSet(afferents);
+            for (Iterator i = dependencies.iterator(); i.hasNext();) {
+                Occurrence occurrence = (Occurrence)i.next();
+                first = Math.min(first, occurrence.position);
+                newAfferents.add(occurrence.node.jPackage);
+            }
+            if (newAfferents.size() > afferents.size()) {
+                jPackage.setAfferents(newAfferents);
+            }
+        }
+
+        /**
+         * Returns the occurrences of the specified classes, in order.
+         */
+        private List getOccurrences(Collection occurrences, Set included) {
+            List list = new ArrayList();
+            for (Iterator i = occurrences.iterator(); i.hasNext();) {
+                Occurrence occurrence = (Occurrence)i.next();
+                if (included.contains(occurrence.jClass)) {
+                    list.add(occurrence);
+                }
+            }
+            Collections.sort(list);
+            return list;
+        }
+
+        public int compareTo(Object other) {
+            long otherFirst = ((Node)other).first;
+            return first < otherFirst ? -1 : (first == otherFirst ? 0 : 1);
+        }
+    }
+
+    /**
+     * An occurrence of a class, with the packages it depends upon, or of
+     * a dependency of a class of a package.
+     */
+    private static class Occurrence implements Comparable {
+
+        private final long position;
+        private final JavaClass jClass;
+        private final Node node;
+        private final Node[] efferents;
+
+        Occurrence(long position, JavaClass jClass, Node[] efferents) {
+            this.position = position;
+            this.jClass = jClass;
+            this.node = null;
+            this.efferents = efferents;
+        }
+
+        Occurrence(long position, JavaClass jClass, Node node) {
+            this.position = position;
+            this.jClass = jClass;
+            this.node = node;
+            this.efferents = null;
+        }
+
+        public int compareTo(Object other) {
+            long otherPosition = ((Occurrence)other).position;
+            return position < otherPosition ? -1 : 
+                (position == otherPosition ? 0 : 1);
+        }
     }
 }
@@ -0,0 +1,348 @@
+package jdepend.framework;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The <code>JarSummaryStore</code> class keeps summaries of the classes
+ * of jar files in a directory, so that jar files which were analyzed
+ * before, such as third-party libraries, are not opened again.
+ * <p>
+ * A summary is addressed by the SHA-256 digest of the contents of its
+ * jar file, together with the settings it was built with, so the same
+ * jar file is summarized once wherever it is found. A summary lists the
+ * names of the packages defined or imported by the jar file, and its
+ * classes, each with whether it is abstract and the numbers of the
+ * packages it imports in that list.
+ * <p>
+ * The digest of each jar file is indexed by its canonical path, length
+ * and modification time, so a jar file is only read again to find its
+ * summary when one of them changed.
+ * <p>
+ * Summaries and index entries are written to a temporary file which is
+ * then moved in place, so several processes can share a store.
+ */
+
+public class JarSummaryStore {
+
+    private static final int MAGIC = 0x4A44534D;
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".summary";
+    private static final String INDEX_SUFFIX = ".digest";
+
+    private File directory;
+
+
+    /**
+     * Constructs a <code>JarSummaryStore</code> instance keeping
+     * summaries in the specified directory.
+     *
+     * @param directory Store directory, created when the first summary
+     *        is stored.
+     */
+    public JarSummaryStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the directory of the stored summaries.
+     *
+     * @return Store directory.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the key of the summary of the specified jar file.
+     *
+     * @param jarFile Jar file.
+     * @param configuration Description of the settings the summary is
+     *        built with.
+     * @return Summary key.
+     * @throws IOException If the jar file cannot be read.
+     */
+    String getKey(File jarFile, String configuration) throws IOException {
+
+        String jarDigest = getJarDigest(jarFile);
+        String configurationDigest = toHex(getDigest().digest(
+            configuration.getBytes("UTF-8")));
+
+        return jarDigest + "-" + configurationDigest.substring(0, 16);
+    }
+
+    /**
+     * Returns the digest of the contents of the specified jar file, from
+     * its index entry if the jar file is unchanged since it was indexed.
+     */
+    private String getJarDigest(File jarFile) throws IOException {
+
+        File canonical = jarFile.getCanonicalFile();
+        String path = canonical.getPath();
+        long length = canonical.length();
+        long lastModified = canonical.lastModified();
+
+        File index = new File(directory, toHex(getDigest().digest(
+            path.getBytes("UTF-8"))).substring(0, 32) + INDEX_SUFFIX);
+        String jarDigest = readIndex(index, path, length, lastModified);
+        if (jarDigest != null) {
+            return jarDigest;
+        }
+
+        MessageDigest digest = getDigest();
+
+        InputStream is = new FileInputStream(canonical);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            is.close();
+        }
+
+        jarDigest = toHex(digest.digest());
+
+        try {
+            writeIndex(index, path, length, lastModified, jarDigest);
+        } catch (IOException e) {
+            // the digest is computed again next time
+        }
+
+        return jarDigest;
+    }
+
+    private void writeIndex(File index, String path, long length,
+        long lastModified, String jarDigest) throws IOException {
+
+        makeDirectory();
+
+        File temporary = File.createTempFile(index.getName(), ".tmp",
+            directory);
+        try {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeUTF(path);
+                out.writeLong(length);
+                out.writeLong(lastModified);
+                out.writeUTF(jarDigest);
+            } finally {
+                out.close();
+            }
+            move(temporary, index);
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Returns the digest recorded in the specified index entry, or
+     * <code>null</code> if it records another path, length or
+     * modification time, or cannot be read.
+     */
+    private String readIndex(File index, String path, long length,
+        long lastModified) {
+
+        if (!index.isFile()) {
+            return null;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(index)));
+            try {
+                if (in.readInt() == MAGIC && in.readUTF().equals(path) &&
+                    in.readLong() == length &&
+                    in.readLong() == lastModified) {
+                    return in.readUTF();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // the digest is computed again
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the classes of the summary with the specified key, or
+     * <code>null</code> if it is not stored. The classes are returned
+     * in the order in which they were stored, and import the packages
+     * they imported when they were stored, in the same order.
+     *
+     * @param key Summary key.
+     * @param registry Registry of the imported packages.
+     * @return Collection of <code>JavaClass</code> instances,
+     *         or <code>null</code>.
+     */
+    Collection getClasses(String key, PackageRegistry registry) {
+
+        File file = new File(directory, key + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            return read(file, registry);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the summary of the specified classes of a jar file
+     * under the specified key.
+     *
+     * @param key Summary key.
+     * @param classes Collection of <code>JavaClass</code> instances.
+     * @throws IOException If the summary cannot be written.
+     */
+    void putClasses(String key, Collection classes) throws IOException {
+
+        makeDirectory();
+
+        File temporary = File.createTempFile(key, ".tmp", directory);
+        try {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)));
+            try {
+                write(out, classes);
+            } finally {
+                out.close();
+            }
+            move(temporary, new File(directory, key + SUFFIX));
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    private void write(DataOutputStream out, Collection classes)
+        throws IOException {
+
+        Map packages = new LinkedHashMap();
+        for (Iterator i = classes.iterator(); i.hasNext();) {
+            JavaClass jClass = (JavaClass)i.next();
+            addPackageName(jClass.getPackageName(), packages);
+            for (Iterator j = jClass.getImportedPackages().iterator();
+                    j.hasNext();) {
+                addPackageName(((JavaPackage)j.next()).getName(), packages);
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        out.writeInt(packages.size());
+        for (Iterator i = packages.keySet().iterator(); i.hasNext();) {
+            out.writeUTF((String)i.next());
+        }
+
+        out.writeInt(classes.size());
+        for (Iterator i = classes.iterator(); i.hasNext();) {
+            JavaClass jClass = (JavaClass)i.next();
+            out.writeUTF(jClass.getName());
+            out.writeInt(((Integer)packages.get(
+                jClass.getPackageName())).intValue());
+            out.writeBoolean(jClass.isAbstract());
+            out.writeUTF(jClass.getSourceFile());
+            Collection imports = jClass.getImportedPackages();
+            out.writeInt(imports.size());
+            for (Iterator j = imports.iterator(); j.hasNext();) {
+                out.writeInt(((Integer)packages.get(
+                    ((JavaPackage)j.next()).getName())).intValue());
+            }
+        }
+    }
+
+    private void addPackageName(String name, Map packages) {
+        if (!packages.containsKey(name)) {
+            packages.put(name, Integer.valueOf(packages.size()));
+        }
+    }
+
+    private Collection read(File file, PackageRegistry registry)
+        throws IOException {
+
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)));
+        try {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Invalid summary: " + file.getPath());
+            }
+
+            String[] packageNames = new String[in.readInt()];
+            for (int i = 0; i < packageNames.length; i++) {
+                packageNames[i] = in.readUTF();
+            }
+
+            int count = in.readInt();
+            Collection classes = new ArrayList(count);
+            for (int i = 0; i < count; i++) {
+                JavaClass jClass = new JavaClass(in.readUTF());
+                jClass.setPackageName(packageNames[in.readInt()]);
+                jClass.isAbstract(in.readBoolean());
+                jClass.setSourceFile(in.readUTF());
+                int imports = in.readInt();
+                for (int j = 0; j < imports; j++) {
+                    jClass.addImportedPackage(
+                        registry.getPackage(packageNames[in.readInt()]));
+                }
+                classes.add(jClass);
+            }
+
+            return classes;
+
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid summary: " + file.getPath());
+        } finally {
+            in.close();
+        }
+    }
+
+    private void makeDirectory() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() &&
+            !directory.isDirectory()) {
+            throw new IOException("Cannot create summary directory: " +
+                directory.getPath());
+        }
+    }
+
+    private void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuffer s = new StringBuffer(bytes.length * 2);
+        for (int i = 0; i < bytes.length; i++) {
+            s.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+            s.append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return s.toString();
+    }
+}
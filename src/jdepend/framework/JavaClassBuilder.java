@@ -2,12 +2,18 @@ package jdepend.framework;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.jar.*;
 import java.util.zip.*;
 
 /**
  * The <code>JavaClassBuilder</code> builds <code>JavaClass</code> 
  * instances from .class, .jar, .war, or .zip files.
+ * <p>
+ * The files, and the entries of jar files, can be parsed by a pool of
+ * worker threads, in which case the parser must be thread-safe. The
+ * classes are returned in the same order as they are when parsed by the
+ * calling thread. Parsing starts as soon as the first file is found.
  * 
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -15,8 +21,18 @@ import java.util.zip.*;
 
 public class JavaClassBuilder {
 
+    /**
+     * Number of parsed classes, per thread, which may wait to be 
+     * handed over when parsing with several threads.
+     */
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+
     private AbstractParser parser;
     private FileManager fileManager;
+    private int threads;
+    private ParseCache cache;
+    private JarSummaryStore summaries;
+    private volatile boolean stopped;
 
     
     public JavaClassBuilder() {
@@ -30,19 +46,65 @@ public class JavaClassBuilder {
     public JavaClassBuilder(AbstractParser parser, FileManager fm) {
         this.parser = parser;
         this.fileManager = fm;
+        this.threads = 1;
     }
 
-    public int countClasses() {
-        AbstractParser counter = new AbstractParser() {
+    /**
+     * Sets the number of threads parsing class files.
+     * 
+     * @param threads Number of threads; <code>1</code> to parse 
+     *        class files on the calling thread.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                "Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
+    }
 
-            public JavaClass parse(InputStream is) {
-                return new JavaClass("");
-            }
-        };
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the cache of parsed classes, so that the classes which did 
+     * not change since they were cached are not parsed again.
+     * 
+     * @param cache Parse cache, or <code>null</code> to parse all classes.
+     */
+    public void setParseCache(ParseCache cache) {
+        this.cache = cache;
+    }
 
-        JavaClassBuilder builder = new JavaClassBuilder(counter, fileManager);
-        Collection classes = builder.build();
-        return classes.size();
+    public ParseCache getParseCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the store of jar file summaries. The classes of a jar file
+     * which was summarized before are read from its summary instead of
+     * the jar file, and the classes of other jar files are summarized
+     * once they are built.
+     * 
+     * @param summaries Summary store, or <code>null</code> to build the 
+     *        classes of all jar files.
+     */
+    public void setJarSummaryStore(JarSummaryStore summaries) {
+        this.summaries = summaries;
+    }
+
+    public JarSummaryStore getJarSummaryStore() {
+        return summaries;
+    }
+
+    /**
+     * Returns the number of classes to be built, without parsing them.
+     * 
+     * @return Number of classes.
+     */
+    public int countClasses() {
+        return fileManager.countClasses();
     }
 
     /**
@@ -52,22 +114,90 @@ public class JavaClassBuilder {
      */
     public Collection build() {
 
-        Collection classes = new ArrayList();
+        final Collection classes = new ArrayList();
 
-        for (Iterator i = fileManager.extractFiles().iterator(); i.hasNext();) {
+        build(new ParserListener() {
 
-            File nextFile = (File)i.next();
+            public void onParsedJavaClass(JavaClass parsedClass) {
+                classes.add(parsedClass);
+            }
+        });
 
-            try {
+        return classes;
+    }
 
-                classes.addAll(buildClasses(nextFile));
+    /**
+     * Builds the <code>JavaClass</code> instances, handing each of them
+     * to the specified listener on the calling thread, in the order of 
+     * the collection returned by <code>build()</code>.
+     * <p>
+     * Files are parsed as soon as they are found. When parsing with 
+     * several threads, the files are found by a thread of their own, and
+     * the number of classes parsed ahead of the listener is bounded, so 
+     * the built classes are not all held in memory at once. Building
+     * stops when the calling thread is interrupted, or when 
+     * <code>stop()</code> is called.
+     * 
+     * @param listener Listener handed the built classes.
+     */
+    public void build(ParserListener listener) {
+
+        openCache();
+        stopped = false;
+
+        if (threads > 1) {
+            new Pipeline(listener).run();
+            return;
+        }
 
-            } catch (IOException ioe) {
-                System.err.println("\n" + ioe.getMessage());
+        Iterator files = fileManager.iterateFiles();
+        try {
+
+            while (files.hasNext() && !stopped) {
+
+                File nextFile = (File)files.next();
+
+                try {
+
+                    onParsedJavaClasses(nextFile, buildClasses(nextFile), 
+                        listener);
+
+                } catch (IOException ioe) {
+                    System.err.println("\n" + ioe.getMessage());
+                }
             }
+
+        } finally {
+            DirectoryWalker.close(files);
         }
+    }
 
-        return classes;
+    /**
+     * Stops building: no further classes are handed to the listener of
+     * the current build. It can be called by the listener, on any thread.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Hands the classes built from the specified file to the specified
+     * listener, telling a <code>ClassFileListener</code> the class file
+     * of each class.
+     */
+    private void onParsedJavaClasses(File file, Collection classes, 
+            ParserListener listener) {
+        boolean isClassFile = listener instanceof ClassFileListener && 
+            fileManager.acceptClassFile(file);
+        for (Iterator i = classes.iterator(); i.hasNext() && !stopped;) {
+            JavaClass parsedClass = (JavaClass)i.next();
+            if (isClassFile) {
+                ((ClassFileListener)listener).onParsedClassFile(file, 
+                    parsedClass);
+            } else {
+                listener.onParsedJavaClass(parsedClass);
+            }
+        }
     }
 
     /**
@@ -79,24 +209,31 @@ public class JavaClassBuilder {
      */
     public Collection buildClasses(File file) throws IOException {
 
+        openCache();
+
         if (fileManager.acceptClassFile(file)) {
-            InputStream is = null;
-            try {
-                is = new BufferedInputStream(new FileInputStream(file));
-                JavaClass parsedClass = parser.parse(is);
-                Collection javaClasses = new ArrayList();
-                javaClasses.add(parsedClass);
-                return javaClasses;
-            } finally {
-                if (is != null) {
-                    is.close();
+            JavaClass parsedClass = parse(file);
+            Collection javaClasses = new ArrayList();
+            javaClasses.add(parsedClass);
+            return javaClasses;
+        } else if (fileManager.acceptJarFile(file)) {
+
+            String key = null;
+            if (summaries != null) {
+                key = getSummaryKey(file);
+                Collection summarized = getSummarizedClasses(key);
+                if (summarized != null) {
+                    return summarized;
                 }
             }
-        } else if (fileManager.acceptJarFile(file)) {
 
             JarFile jarFile = new JarFile(file);
             Collection result = buildClasses(jarFile);
             jarFile.close();
+
+            if (key != null) {
+                putSummarizedClasses(key, result);
+            }
             return result;
 
         } else {
@@ -115,23 +252,481 @@ public class JavaClassBuilder {
      */
     public Collection buildClasses(JarFile file) throws IOException {
 
+        openCache();
+
         Collection javaClasses = new ArrayList();
 
         Enumeration entries = file.entries();
         while (entries.hasMoreElements()) {
             ZipEntry e = (ZipEntry) entries.nextElement();
             if (fileManager.acceptClassFileName(e.getName())) {
-                InputStream is = null;
+                javaClasses.add(parse(file, e));
+            }
+        }
+
+        return javaClasses;
+    }
+
+    private void openCache() {
+        if (cache != null) {
+            cache.open(parser.getConfiguration());
+        }
+    }
+
+    /**
+     * Returns the class of the specified class file, from the cache 
+     * if it did not change since it was cached.
+     */
+    private JavaClass parse(File file) throws IOException {
+
+        if (cache == null) {
+            return parser.parse(file);
+        }
+
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long stamp = file.lastModified();
+
+        JavaClass jClass = getCachedClass(key, size, stamp);
+        if (jClass == null) {
+            jClass = parser.parse(file);
+            cache.put(key, size, stamp, jClass);
+        }
+
+        return jClass;
+    }
+
+    /**
+     * Returns the class of the specified jar file entry, from the cache
+     * if its size and checksum did not change since it was cached.
+     */
+    private JavaClass parse(JarFile file, ZipEntry e) throws IOException {
+
+        String key = null;
+        if (cache != null && e.getSize() >= 0 && e.getCrc() >= 0) {
+            key = new File(file.getName()).getAbsolutePath() + "!/" + 
+                e.getName();
+            JavaClass jClass = getCachedClass(key, e.getSize(), e.getCrc());
+            if (jClass != null) {
+                return jClass;
+            }
+        }
+
+        InputStream is = new BufferedInputStream(file.getInputStream(e));
+        try {
+            JavaClass jClass = parser.parse(is, 
+                file.getName() + "!/" + e.getName());
+            if (key != null) {
+                cache.put(key, e.getSize(), e.getCrc(), jClass);
+            }
+            return jClass;
+        } finally {
+            is.close();
+        }
+    }
+
+    private String getSummaryKey(File jarFile) throws IOException {
+        return summaries.getKey(jarFile, parser.getConfiguration() + "," + 
+            fileManager.getConfiguration());
+    }
+
+    /**
+     * Returns the classes of the summary with the specified key, 
+     * informing the listeners of the parser as if they were parsed, or
+     * <code>null</code> if it is not stored.
+     */
+    private Collection getSummarizedClasses(String key) {
+        Collection classes = summaries.getClasses(key, 
+            parser.getPackageRegistry());
+        if (classes != null) {
+            for (Iterator i = classes.iterator(); i.hasNext();) {
+                parser.onParsedJavaClass((JavaClass)i.next());
+            }
+        }
+        return classes;
+    }
+
+    private void putSummarizedClasses(String key, Collection classes) {
+        try {
+            summaries.putClasses(key, classes);
+        } catch (IOException ioe) {
+            System.err.println("\n" + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Returns the cached class with the specified key, informing the
+     * listeners of the parser as if it was parsed, or <code>null</code>
+     * if it is not cached.
+     */
+    private JavaClass getCachedClass(String key, long size, long stamp) {
+        JavaClass jClass = cache.get(key, size, stamp, 
+            parser.getPackageRegistry());
+        if (jClass != null) {
+            parser.onParsedJavaClass(jClass);
+        }
+        return jClass;
+    }
+
+    /**
+     * The <code>ClassFileListener</code> interface defines a listener 
+     * which is told the class file of each class built from a class file,
+     * rather than from a jar file.
+     */
+    interface ClassFileListener extends ParserListener {
+
+        /**
+         * Called instead of <code>onParsedJavaClass</code> for each class 
+         * built from a class file.
+         * 
+         * @param classFile Class file.
+         * @param parsedClass Class built from the class file.
+         */
+        void onParsedClassFile(File classFile, JavaClass parsedClass);
+    }
+
+    /**
+     * The <code>ConcurrentClassListener</code> interface defines a 
+     * listener which, when building with several threads, is also told 
+     * of each class on the thread which built it, as soon as it is built.
+     */
+    interface ConcurrentClassListener extends ClassFileListener {
+
+        /**
+         * Called on a parsing thread for each built class, before it is
+         * handed to <code>onParsedJavaClass</code> or 
+         * <code>onParsedClassFile</code>, if it is handed over at all.
+         * The class is not handed over if another class of its file 
+         * cannot be parsed, or if building was stopped. Building returns
+         * only once the parsing threads have stopped.
+         * 
+         * @param builtClass Built class.
+         * @param order Position of the class among the built classes,
+         *        which are handed over in increasing order.
+         */
+        void onBuiltJavaClass(JavaClass builtClass, long order);
+    }
+
+    /**
+     * The <code>Pipeline</code> class connects the discovery of files,
+     * the parsing of classes, and the listener handed the built classes.
+     * <p>
+     * A discovery thread walks the registered directories and submits a
+     * parse task for each class file, and for each class in a jar file,
+     * to a pool of worker threads. The futures of the parse tasks are put
+     * in a bounded queue in the order of the files, followed by the end
+     * of their file. The calling thread takes them from the queue and 
+     * hands the classes of each file to the listener once all of them 
+     * are parsed, so a file yields no classes at all if one of its 
+     * classes cannot be parsed.
+     */
+    private class Pipeline {
+
+        private final Object END = new Object();
+
+        /**
+         * Number of bits of the order of a built class taken by its 
+         * position among the classes read from a summary.
+         */
+        private static final int TASK_SHIFT = 24;
+
+        private ParserListener listener;
+        private BlockingQueue queue;
+        private ExecutorService executor;
+        private long tasks;
+        private volatile Throwable failure;
+
+
+        Pipeline(ParserListener listener) {
+            this.listener = listener;
+            this.queue = new ArrayBlockingQueue(
+                threads * QUEUE_CAPACITY_PER_THREAD);
+            this.executor = Executors.newFixedThreadPool(threads, 
+                new ThreadFactory() {
+
+                    private int count;
+
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, 
+                            "JDepend parser " + (++count));
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+
+        void run() {
+
+            Thread discovery = new Thread(new Runnable() {
+
+                public void run() {
+                    discover();
+                }
+            }, "JDepend discovery");
+            discovery.setDaemon(true);
+            discovery.start();
+
+            try {
+
+                consume();
+
+            } finally {
+                discovery.interrupt();
+                executor.shutdownNow();
                 try {
-	                is = new BufferedInputStream(file.getInputStream(e));
-                    JavaClass jc = parser.parse(is);
-                    javaClasses.add(jc);
+                    discovery.join();
+                    executor.awaitTermination(Long.MAX_VALUE, 
+                        TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                for (Iterator i = queue.iterator(); i.hasNext();) {
+                    Object next = i.next();
+                    if (next instanceof FileEnd) {
+                        close(((FileEnd)next).jarFile);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Queues the tasks of the files to build, followed by the end of
+         * the build, which is queued even if discovery fails so that the
+         * consumer learns of the failure once it took the queued tasks.
+         */
+        private void discover() {
+            Iterator files = null;
+            try {
+
+                files = fileManager.iterateFiles();
+                while (files.hasNext()) {
+                    submit((File)files.next());
+                }
+
+            } catch (InterruptedException ie) {
+                // building was stopped
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+            } catch (Error e) {
+                failure = e;
+            } finally {
+                DirectoryWalker.close(files);
+            }
+
+            try {
+                queue.put(END);
+            } catch (InterruptedException ie) {
+                // building was stopped
+            }
+        }
+
+        private void submit(final File file) throws InterruptedException {
+
+            if (fileManager.acceptClassFile(file)) {
+
+                final long task = tasks++;
+                queue.put(executor.submit(new Callable() {
+
+                    public Object call() throws IOException {
+                        return built(parse(file), task);
+                    }
+                }));
+                queue.put(new FileEnd(file, null, null, null));
+
+            } else if (fileManager.acceptJarFile(file)) {
+
+                String key = null;
+                if (summaries != null) {
+                    try {
+                        key = getSummaryKey(file);
+                    } catch (IOException ioe) {
+                        queue.put(new FileEnd(file, null, ioe, null));
+                        return;
+                    }
+                    final Collection summarized = getSummarizedClasses(key);
+                    if (summarized != null) {
+                        final long task = tasks++;
+                        queue.put(executor.submit(new Callable() {
+
+                            public Object call() {
+                                return built(summarized, task);
+                            }
+                        }));
+                        queue.put(new FileEnd(file, null, null, null));
+                        return;
+                    }
+                }
+
+                final JarFile jarFile;
+                try {
+                    jarFile = new JarFile(file);
+                } catch (IOException ioe) {
+                    queue.put(new FileEnd(file, null, ioe, null));
+                    return;
+                }
+
+                boolean queued = false;
+                try {
+                    Enumeration entries = jarFile.entries();
+                    while (entries.hasMoreElements()) {
+                        final ZipEntry e = (ZipEntry) entries.nextElement();
+                        if (fileManager.acceptClassFileName(e.getName())) {
+                            final long task = tasks++;
+                            queue.put(executor.submit(new Callable() {
+
+                                public Object call() throws IOException {
+                                    return built(parse(jarFile, e), task);
+                                }
+                            }));
+                        }
+                    }
+                    queue.put(new FileEnd(file, jarFile, null, key));
+                    queued = true;
                 } finally {
-                    is.close();
+                    if (!queued) {
+                        close(jarFile);
+                    }
                 }
+
+            } else {
+                queue.put(new FileEnd(file, null, new IOException(
+                    "File is not a valid .class, .jar, .war, or .zip file: " 
+                    + file.getPath()), null));
             }
         }
 
-        return javaClasses;
+        private void consume() {
+
+            List classes = new ArrayList();
+            IOException error = null;
+
+            while (!stopped) {
+
+                Object next;
+                try {
+                    next = queue.take();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (next == END) {
+                    if (failure instanceof Error) {
+                        throw (Error)failure;
+                    } else if (failure != null) {
+                        throw (RuntimeException)failure;
+                    }
+                    return;
+                } else if (next instanceof Future) {
+                    if (error == null) {
+                        try {
+                            Object parsed = getParsedClasses((Future)next);
+                            if (parsed instanceof Collection) {
+                                classes.addAll((Collection)parsed);
+                            } else {
+                                classes.add(parsed);
+                            }
+                        } catch (IOException ioe) {
+                            error = ioe;
+                        }
+                    } else {
+                        ((Future)next).cancel(true);
+                    }
+                } else if (next instanceof FileEnd) {
+                    FileEnd end = (FileEnd)next;
+                    close(end.jarFile);
+                    if (end.error != null) {
+                        error = end.error;
+                    }
+                    if (error != null) {
+                        System.err.println("\n" + error.getMessage());
+                    } else {
+                        if (end.summaryKey != null) {
+                            putSummarizedClasses(end.summaryKey, classes);
+                        }
+                        onParsedJavaClasses(end.file, classes, listener);
+                    }
+                    classes.clear();
+                    error = null;
+                }
+            }
+        }
+
+        /**
+         * Tells a <code>ConcurrentClassListener</code> of the class, or
+         * classes, built by the specified task, and returns them.
+         */
+        private Object built(Object parsed, long task) {
+            if (listener instanceof ConcurrentClassListener) {
+                ConcurrentClassListener concurrentListener = 
+                    (ConcurrentClassListener)listener;
+                if (parsed instanceof Collection) {
+                    long order = task << TASK_SHIFT;
+                    for (Iterator i = ((Collection)parsed).iterator(); 
+                            i.hasNext();) {
+                        concurrentListener.onBuiltJavaClass(
+                            (JavaClass)i.next(), order++);
+                    }
+                } else {
+                    concurrentListener.onBuiltJavaClass(
+                        (JavaClass)parsed, task << TASK_SHIFT);
+                }
+            }
+            return parsed;
+        }
+
+        /**
+         * Returns the class parsed by the specified task, or the classes
+         * read from a summary.
+         */
+        private Object getParsedClasses(Future future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted");
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException)cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                } else if (cause instanceof Error) {
+                    throw (Error)cause;
+                }
+                throw new IOException(cause.toString());
+            }
+        }
+
+        private void close(JarFile jarFile) {
+            if (jarFile != null) {
+                try {
+                    jarFile.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the end of the parse tasks of a file in the queue of
+     * the pipeline.
+     */
+    private static class FileEnd {
+
+        private final JarFile jarFile;
+        private final IOException error;
+
+        private final File file;
+        private final String summaryKey;
+
+        FileEnd(File file, JarFile jarFile, IOException error, 
+                String summaryKey) {
+            this.file = file;
+            this.jarFile = jarFile;
+            this.error = error;
+            this.summaryKey = summaryKey;
+        }
     }
 }
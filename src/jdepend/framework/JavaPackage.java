@@ -13,9 +13,18 @@ public class JavaPackage {
 
     private String name;
     private int volatility;
-    private HashSet classes;
-    private List afferents;
-    private List efferents;
+    private HashMap classes;
+    private int abstractClassCount;
+    private Collection afferents;
+    private Collection efferents;
+    private PackageGraph graph;
+    private int id;
+    private final CycleDetector cycleDetector;
+
+    private boolean measured;
+    private float abstractness;
+    private float instability;
+    private float distance;
 
 
     public JavaPackage(String name) {
@@ -25,9 +34,10 @@ public class JavaPackage {
     public JavaPackage(String name, int volatility) {
         this.name = name;
         setVolatility(volatility);
-        classes = new HashSet();
-        afferents = new ArrayList();
-        efferents = new ArrayList();
+        classes = new HashMap();
+        afferents = new LinkedHashSet();
+        efferents = new LinkedHashSet();
+        cycleDetector = new CycleDetector();
     }
 
     public String getName() {
@@ -46,10 +56,21 @@ public class JavaPackage {
      */
     public void setVolatility(int v) {
         volatility = v;
+        measured = false;
     }
 
+    /**
+     * Indicates whether this package participates in a package dependency
+     * cycle, or depends on a package which does.
+     * <p>
+     * The answer is kept until a dependency between the packages this
+     * package is connected to changes.
+     * 
+     * @return <code>true</code> if a cycle exist; <code>false</code>
+     *         otherwise.
+     */
     public boolean containsCycle() {
-        return collectCycle(new ArrayList());
+        return CycleDetector.containsCycle(this);
     }
 
     /**
@@ -68,17 +89,33 @@ public class JavaPackage {
             return true;
         }
 
-        list.add(this);
+        if (!containsCycle()) {
+            return false;
+        }
 
-        for (Iterator i = getEfferents().iterator(); i.hasNext();) {
-            JavaPackage efferent = (JavaPackage)i.next();
-            if (efferent.collectCycle(list)) {
-                return true;
+        Set path = new HashSet(list);
+        JavaPackage jPackage = this;
+
+        while (jPackage != null) {
+
+            list.add(jPackage);
+            path.add(jPackage);
+
+            JavaPackage next = null;
+            for (Iterator i = jPackage.getEfferents().iterator();
+                    next == null && i.hasNext();) {
+                JavaPackage efferent = (JavaPackage)i.next();
+                if (path.contains(efferent)) {
+                    list.add(efferent);
+                    return true;
+                }
+                if (efferent.containsCycle()) {
+                    next = efferent;
+                }
             }
+            jPackage = next;
         }
 
-        list.remove(this);
-
         return false;
     }
 
@@ -87,7 +124,8 @@ public class JavaPackage {
      * which originates from this package.
      * <p>
      * This is a more exhaustive search than that employed by
-     * <code>collectCycle</code>.
+     * <code>collectCycle</code>. Each package is followed once, and a
+     * package is collected again each time it closes a cycle.
      * 
      * @param list Collecting object to be populated with the list of
      *            JavaPackage instances in a cycle.
@@ -101,30 +139,86 @@ public class JavaPackage {
             return true;
         }
 
+        if (!containsCycle()) {
+            return false;
+        }
+
+        Set path = new HashSet(list);
+        Set followed = new HashSet();
+        LinkedList packages = new LinkedList();
+        LinkedList efferents = new LinkedList();
+
         list.add(this);
+        path.add(this);
+        followed.add(this);
+        packages.addLast(this);
+        efferents.addLast(getEfferents().iterator());
+
+        while (!packages.isEmpty()) {
+
+            Iterator i = (Iterator)efferents.getLast();
+            if (!i.hasNext()) {
+                path.remove(packages.removeLast());
+                efferents.removeLast();
+                continue;
+            }
 
-        boolean containsCycle = false;
-        for (Iterator i = getEfferents().iterator(); i.hasNext();) {
             JavaPackage efferent = (JavaPackage)i.next();
-            if (efferent.collectAllCycles(list)) {
-                containsCycle = true;
+            if (path.contains(efferent)) {
+                list.add(efferent);
+            } else if (efferent.containsCycle() && followed.add(efferent)) {
+                list.add(efferent);
+                path.add(efferent);
+                packages.addLast(efferent);
+                efferents.addLast(efferent.getEfferents().iterator());
             }
         }
 
-        if (containsCycle) {
-            return true;
-        }
-        
-        list.remove(this);
-        return false;
+        return true;
     }
 
     public void addClass(JavaClass clazz) {
-        classes.add(clazz);
+        if (!classes.containsKey(clazz)) {
+            classes.put(clazz, clazz);
+            if (clazz.isAbstract()) {
+                abstractClassCount++;
+            }
+            measured = false;
+        }
+    }
+
+    /**
+     * Removes the specified class from this package.
+     * 
+     * @param clazz Java class.
+     */
+    public void removeClass(JavaClass clazz) {
+        JavaClass removed = (JavaClass)classes.remove(clazz);
+        if (removed != null) {
+            if (removed.isAbstract()) {
+                abstractClassCount--;
+            }
+            measured = false;
+        }
     }
 
+    /**
+     * Removes all classes from this package.
+     */
+    public void removeClasses() {
+        classes.clear();
+        abstractClassCount = 0;
+        measured = false;
+    }
+
+    /**
+     * Returns the classes of this package, which cannot be changed 
+     * through the returned collection.
+     * 
+     * @return Collection of <code>JavaClass</code> instances.
+     */
     public Collection getClasses() {
-        return classes;
+        return Collections.unmodifiableSet(classes.keySet());
     }
 
     public int getClassCount() {
@@ -132,29 +226,11 @@ public class JavaPackage {
     }
 
     public int getAbstractClassCount() {
-        int count = 0;
-
-        for (Iterator i = classes.iterator(); i.hasNext();) {
-            JavaClass clazz = (JavaClass)i.next();
-            if (clazz.isAbstract()) {
-                count++;
-            }
-        }
-
-        return count;
+        return abstractClassCount;
     }
 
     public int getConcreteClassCount() {
-        int count = 0;
-
-        for (Iterator i = classes.iterator(); i.hasNext();) {
-            JavaClass clazz = (JavaClass)i.next();
-            if (!clazz.isAbstract()) {
-                count++;
-            }
-        }
-
-        return count;
+        return classes.size() - abstractClassCount;
     }
 
     /**
@@ -175,40 +251,134 @@ public class JavaPackage {
      */
     public void addAfferent(JavaPackage jPackage) {
         if (!jPackage.getName().equals(getName())) {
-            if (!afferents.contains(jPackage)) {
+            if (!getAfferents().contains(jPackage)) {
+                thaw();
                 afferents.add(jPackage);
             }
         }
     }
 
+    /**
+     * Removes the specified Java package as an afferent of this package.
+     * 
+     * @param jPackage Java package.
+     */
+    public void removeAfferent(JavaPackage jPackage) {
+        thaw();
+        afferents.remove(jPackage);
+    }
+
+    /**
+     * Returns the packages depending upon this package, which cannot be
+     * changed through the returned collection, but by 
+     * <code>addAfferent</code>, <code>removeAfferent</code>, and
+     * <code>setAfferents</code>.
+     * 
+     * @return Collection of <code>JavaPackage</code> instances.
+     */
     public Collection getAfferents() {
-        return afferents;
+        if (graph != null) {
+            return graph.getPackages(graph.afferentIds, 
+                graph.afferentStarts[id], graph.afferentStarts[id + 1]);
+        }
+        return Collections.unmodifiableCollection(afferents);
     }
 
     public void setAfferents(Collection afferents) {
-        this.afferents = new ArrayList(afferents);
+        thaw();
+        this.afferents = new LinkedHashSet(afferents);
     }
 
     public void addEfferent(JavaPackage jPackage) {
         if (!jPackage.getName().equals(getName())) {
-            if (!efferents.contains(jPackage)) {
+            if (!getEfferents().contains(jPackage)) {
+                thaw();
                 efferents.add(jPackage);
+                CycleDetector.graphChanged(this,
+                    Collections.singleton(jPackage));
             }
         }
     }
 
+    /**
+     * Removes the specified Java package as an efferent of this package.
+     * 
+     * @param jPackage Java package.
+     */
+    public void removeEfferent(JavaPackage jPackage) {
+        thaw();
+        if (efferents.remove(jPackage)) {
+            CycleDetector.graphChanged(this, Collections.EMPTY_SET);
+        }
+    }
+
+    /**
+     * Returns the packages this package depends upon, which cannot be
+     * changed through the returned collection, but by 
+     * <code>dependsUpon</code>, <code>addEfferent</code>, 
+     * <code>removeEfferent</code>, and <code>setEfferents</code>, so
+     * that the dependency cycles known to contain this package are
+     * discarded when they change.
+     * 
+     * @return Collection of <code>JavaPackage</code> instances.
+     */
     public Collection getEfferents() {
-        return efferents;
+        if (graph != null) {
+            return graph.getPackages(graph.efferentIds, 
+                graph.efferentStarts[id], graph.efferentStarts[id + 1]);
+        }
+        return Collections.unmodifiableCollection(efferents);
     }
 
     public void setEfferents(Collection efferents) {
-        this.efferents = new ArrayList(efferents);
+        thaw();
+        this.efferents = new LinkedHashSet(efferents);
+        CycleDetector.graphChanged(this, this.efferents);
+    }
+
+    /**
+     * Returns the detector keeping the dependency cycles of the group
+     * of packages this package is connected to.
+     */
+    CycleDetector getCycleDetector() {
+        return cycleDetector;
+    }
+
+    /**
+     * Makes this package read its afferents and efferents from the
+     * specified graph, discarding its own.
+     * 
+     * @param graph Package graph.
+     * @param id Number of this package in the graph.
+     */
+    void freeze(PackageGraph graph, int id) {
+        this.graph = graph;
+        this.id = id;
+        this.afferents = null;
+        this.efferents = null;
+    }
+
+    /**
+     * Copies the afferents and efferents of this package from its graph
+     * before they change, making the graph no longer current.
+     */
+    private void thaw() {
+        measured = false;
+        if (graph != null) {
+            afferents = new LinkedHashSet(getAfferents());
+            efferents = new LinkedHashSet(getEfferents());
+            graph.invalidate();
+            graph = null;
+        }
     }
 
     /**
      * @return The afferent coupling (Ca) of this package.
      */
     public int afferentCoupling() {
+        if (graph != null) {
+            return graph.getAfferentCount(id);
+        }
         return afferents.size();
     }
 
@@ -216,6 +386,9 @@ public class JavaPackage {
      * @return The efferent coupling (Ce) of this package.
      */
     public int efferentCoupling() {
+        if (graph != null) {
+            return graph.getEfferentCount(id);
+        }
         return efferents.size();
     }
 
@@ -223,35 +396,57 @@ public class JavaPackage {
      * @return Instability (0-1).
      */
     public float instability() {
-
-        float totalCoupling = (float) efferentCoupling()
-                + (float) afferentCoupling();
-
-        if (totalCoupling > 0) {
-            return efferentCoupling()/totalCoupling;
-        }
-
-        return 0;
+        measure();
+        return instability;
     }
 
     /**
      * @return The package's abstractness (0-1).
      */
     public float abstractness() {
-
-        if (getClassCount() > 0) {
-            return (float) getAbstractClassCount() / (float) getClassCount();
-        }
-
-        return 0;
+        measure();
+        return abstractness;
     }
 
     /**
      * @return The package's distance from the main sequence (D).
      */
     public float distance() {
-        float d = Math.abs(abstractness() + instability() - 1);
-        return d * volatility;
+        measure();
+        return distance;
+    }
+
+    /**
+     * Computes the metrics of this package, unless its classes, 
+     * afferents, efferents, and volatility did not change since they
+     * were last computed.
+     */
+    private void measure() {
+
+        if (measured) {
+            return;
+        }
+
+        float totalCoupling = (float) efferentCoupling()
+                + (float) afferentCoupling();
+
+        if (totalCoupling > 0) {
+            instability = efferentCoupling()/totalCoupling;
+        } else {
+            instability = 0;
+        }
+
+        if (getClassCount() > 0) {
+            abstractness = 
+                (float) getAbstractClassCount() / (float) getClassCount();
+        } else {
+            abstractness = 0;
+        }
+
+        float d = Math.abs(abstractness + instability - 1);
+        distance = d * volatility;
+
+        measured = true;
     }
 
     public boolean equals(Object other) {
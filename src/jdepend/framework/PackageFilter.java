@@ -2,6 +2,8 @@ package jdepend.framework;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * The <code>PackageFilter</code> class is used to filter imported 
@@ -10,6 +12,21 @@ import java.util.*;
  * The default filter contains any packages declared in the
  * <code>jdepend.properties</code> file, if such a file exists 
  * either in the user's home directory or somewhere in the classpath.
+ * <p>
+ * A filter is either a package name prefix, optionally followed by a 
+ * <code>*</code>, a pattern, or a regular expression. In a pattern, a 
+ * <code>*</code> matches any part of a package name segment and a 
+ * <code>**</code> segment matches any number of segments, as in 
+ * <code>com.acme.*.internal</code> or <code>**.generated</code>. A 
+ * pattern filters the packages it matches and their subpackages. A 
+ * regular expression is prefixed by <code>regex:</code> and filters the 
+ * packages whose whole name it matches.
+ * <p>
+ * The filters are compiled into a tree with a node per package name
+ * segment when a package name is first checked, so that checking a name
+ * does not take longer as filters are added, and the decision for each
+ * package name is remembered. A filter can be shared by threads as long
+ * as no filters are added.
  * 
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -17,7 +34,10 @@ import java.util.*;
 
 public class PackageFilter {
 
+    private static final String REGEX_PREFIX = "regex:";
+
     private Collection filtered;
+    private volatile Matcher matcher;
 
     /**
      * Constructs a <code>PackageFilter</code> instance containing 
@@ -56,10 +76,10 @@ public class PackageFilter {
     /**
      * Returns the collection of filtered package names.
      * 
-     * @return Filtered package names.
+     * @return Unmodifiable collection of filtered package names.
      */
     public Collection getFilters() {
-        return filtered;
+        return Collections.unmodifiableCollection(filtered);
     }
 
     /**
@@ -70,14 +90,22 @@ public class PackageFilter {
      *         <code>false</code> otherwise.
      */
     public boolean accept(String packageName) {
-        for (Iterator i = getFilters().iterator(); i.hasNext();) {
-            String nameToFilter = (String)i.next();
-            if (packageName.startsWith(nameToFilter)) {
-                return false;
-            }
-        }
+        return getMatcher().accept(packageName);
+    }
 
-        return true;
+    /**
+     * Indicates whether the specified package name, or the name of any 
+     * of its subpackages, may pass this package filter. As prefixes and 
+     * patterns filter the subpackages of the packages they filter as 
+     * well, only regular expressions may filter a package without 
+     * filtering its subpackages.
+     * 
+     * @param packageName Package name.
+     * @return <code>false</code> if neither the package nor any of its
+     *         subpackages should be included; <code>true</code> otherwise.
+     */
+    public boolean acceptSubpackages(String packageName) {
+        return !getMatcher().matchesPattern(packageName);
     }
 
     public void addPackages(Collection packageNames) {
@@ -86,13 +114,93 @@ public class PackageFilter {
         }
     }
 
+    /**
+     * Adds the specified package name prefix, pattern, or regular
+     * expression to the filtered packages. A trailing <code>*</code> is
+     * dropped from a prefix, and kept in a pattern.
+     * 
+     * @param packageName Package name prefix, pattern, or regular 
+     *        expression prefixed by <code>regex:</code>.
+     * @throws java.util.regex.PatternSyntaxException If the regular
+     *         expression is invalid.
+     */
     public void addPackage(String packageName) {
-        if (packageName.endsWith("*")) {
+        if (packageName.startsWith(REGEX_PREFIX)) {
+            Pattern.compile(packageName.substring(REGEX_PREFIX.length()));
+        } else if (packageName.endsWith("*") &&
+            packageName.indexOf('*') == packageName.length() - 1) {
             packageName = packageName.substring(0, packageName.length() - 1);
         }
 
         if (packageName.length() > 0) {
-            getFilters().add(packageName);
+            filtered.add(packageName);
+            matcher = null;
+        }
+    }
+
+    private Matcher getMatcher() {
+        Matcher current = matcher;
+        if (current == null) {
+            current = new Matcher(filtered);
+            matcher = current;
+        }
+        return current;
+    }
+
+    /**
+     * The compiled filters, with the decisions made so far.
+     */
+    private static class Matcher {
+
+        private final PackagePatterns patterns;
+        private final Pattern regex;
+        private final Map accepted;
+
+        Matcher(Collection filters) {
+
+            patterns = new PackagePatterns();
+            accepted = new ConcurrentHashMap();
+
+            StringBuffer regexes = new StringBuffer();
+            for (Iterator i = filters.iterator(); i.hasNext();) {
+                String filter = (String)i.next();
+                if (filter.startsWith(REGEX_PREFIX)) {
+                    if (regexes.length() > 0) {
+                        regexes.append('|');
+                    }
+                    regexes.append("(?:").append(
+                        filter.substring(REGEX_PREFIX.length())).append(')');
+                } else if (filter.indexOf('*') < 0) {
+                    patterns.add(filter + "*.**", 0);
+                } else {
+                    patterns.add(filter + ".**", 0);
+                }
+            }
+
+            regex = regexes.length() > 0 ?
+                Pattern.compile(regexes.toString()) : null;
+        }
+
+        boolean accept(String packageName) {
+            Boolean decision = (Boolean)accepted.get(packageName);
+            if (decision == null) {
+                boolean filtered = matchesPattern(packageName) ||
+                    (regex != null && regex.matcher(packageName).matches());
+                decision = Boolean.valueOf(!filtered);
+                accepted.put(packageName, decision);
+            }
+            return decision.booleanValue();
+        }
+
+        /**
+         * Indicates whether a prefix or pattern matches the specified
+         * package or one of the packages containing it. A prefix is 
+         * matched as the pattern ending with a <code>*</code>, and the 
+         * subpackages of a pattern as the pattern followed by a 
+         * <code>**</code> segment.
+         */
+        boolean matchesPattern(String packageName) {
+            return patterns.matches(packageName);
         }
     }
 }
@@ -0,0 +1,209 @@
+package jdepend.framework;
+
+import java.util.*;
+
+/**
+ * The <code>PackageGraph</code> class is an immutable snapshot of the
+ * dependencies between packages, in which each package is identified
+ * by a number.
+ * <p>
+ * The efferents and afferents of all packages are kept in two arrays
+ * each: one listing the numbers of the efferents, or afferents, of each
+ * package in turn, and one with the position in that list where the
+ * efferents, or afferents, of each package start. This takes two numbers
+ * per dependency, rather than an object reference in a list for each of
+ * its ends.
+ * <p>
+ * The packages of a graph read their afferents and efferents from it
+ * until one of them changes, after which the graph is no longer current.
+ */
+
+public class PackageGraph {
+
+    private final JavaPackage[] packages;
+    private final Map ids;
+    final int[] efferentStarts;
+    final int[] efferentIds;
+    final int[] afferentStarts;
+    final int[] afferentIds;
+    private volatile boolean current;
+
+
+    /**
+     * Constructs a <code>PackageGraph</code> instance of the specified
+     * packages and the packages they depend upon or are used by.
+     * The specified packages are numbered in order, starting at
+     * <code>0</code>.
+     *
+     * @param packages Collection of <code>JavaPackage</code> instances.
+     */
+    PackageGraph(Collection packages) {
+
+        ids = new IdentityHashMap();
+        List numbered = new ArrayList();
+        for (Iterator i = packages.iterator(); i.hasNext();) {
+            number((JavaPackage)i.next(), numbered);
+        }
+
+        for (int i = 0; i < numbered.size(); i++) {
+            JavaPackage jPackage = (JavaPackage)numbered.get(i);
+            for (Iterator j = jPackage.getEfferents().iterator();
+                    j.hasNext();) {
+                number((JavaPackage)j.next(), numbered);
+            }
+            for (Iterator j = jPackage.getAfferents().iterator();
+                    j.hasNext();) {
+                number((JavaPackage)j.next(), numbered);
+            }
+        }
+
+        this.packages = (JavaPackage[])numbered.toArray(
+            new JavaPackage[numbered.size()]);
+
+        efferentStarts = new int[this.packages.length + 1];
+        afferentStarts = new int[this.packages.length + 1];
+        for (int i = 0; i < this.packages.length; i++) {
+            efferentStarts[i + 1] = efferentStarts[i] +
+                this.packages[i].getEfferents().size();
+            afferentStarts[i + 1] = afferentStarts[i] +
+                this.packages[i].getAfferents().size();
+        }
+
+        efferentIds = new int[efferentStarts[this.packages.length]];
+        afferentIds = new int[afferentStarts[this.packages.length]];
+        for (int i = 0; i < this.packages.length; i++) {
+            fill(this.packages[i].getEfferents(), efferentIds,
+                efferentStarts[i]);
+            fill(this.packages[i].getAfferents(), afferentIds,
+                afferentStarts[i]);
+        }
+
+        current = true;
+        for (int i = 0; i < this.packages.length; i++) {
+            this.packages[i].freeze(this, i);
+        }
+    }
+
+    private void number(JavaPackage jPackage, List numbered) {
+        if (!ids.containsKey(jPackage)) {
+            ids.put(jPackage, Integer.valueOf(numbered.size()));
+            numbered.add(jPackage);
+        }
+    }
+
+    private void fill(Collection neighbors, int[] neighborIds, int start) {
+        for (Iterator i = neighbors.iterator(); i.hasNext();) {
+            neighborIds[start++] = getId((JavaPackage)i.next());
+        }
+    }
+
+    /**
+     * Returns the number of packages.
+     *
+     * @return Number of packages.
+     */
+    public int size() {
+        return packages.length;
+    }
+
+    /**
+     * Returns the package with the specified number.
+     *
+     * @param id Package number.
+     * @return Package.
+     */
+    public JavaPackage getPackage(int id) {
+        return packages[id];
+    }
+
+    /**
+     * Returns the number of the specified package.
+     *
+     * @param jPackage Package.
+     * @return Package number, or <code>-1</code> if the package is not
+     *         part of this graph.
+     */
+    public int getId(JavaPackage jPackage) {
+        Integer id = (Integer)ids.get(jPackage);
+        return id == null ? -1 : id.intValue();
+    }
+
+    /**
+     * Returns the number of efferents of the specified package.
+     *
+     * @param id Package number.
+     * @return Efferent coupling (Ce).
+     */
+    public int getEfferentCount(int id) {
+        return efferentStarts[id + 1] - efferentStarts[id];
+    }
+
+    /**
+     * Returns the number of the specified efferent of a package.
+     *
+     * @param id Package number.
+     * @param index Position of the efferent, from <code>0</code>.
+     * @return Efferent number.
+     */
+    public int getEfferent(int id, int index) {
+        return efferentIds[efferentStarts[id] + index];
+    }
+
+    /**
+     * Returns the number of afferents of the specified package.
+     *
+     * @param id Package number.
+     * @return Afferent coupling (Ca).
+     */
+    public int getAfferentCount(int id) {
+        return afferentStarts[id + 1] - afferentStarts[id];
+    }
+
+    /**
+     * Returns the number of the specified afferent of a package.
+     *
+     * @param id Package number.
+     * @param index Position of the afferent, from <code>0</code>.
+     * @return Afferent number.
+     */
+    public int getAfferent(int id, int index) {
+        return afferentIds[afferentStarts[id] + index];
+    }
+
+    /**
+     * Indicates whether the afferents and efferents of the packages are
+     * still those of this graph.
+     *
+     * @return <code>true</code> if no package changed since this graph
+     *         was built.
+     */
+    public boolean isCurrent() {
+        return current;
+    }
+
+    void invalidate() {
+        current = false;
+    }
+
+    /**
+     * Returns the packages with the specified numbers as an unmodifiable
+     * list.
+     */
+    List getPackages(final int[] neighborIds, final int start,
+            final int end) {
+        return new AbstractList() {
+
+            public Object get(int index) {
+                if (index < 0 || index >= size()) {
+                    throw new IndexOutOfBoundsException(
+                        "Index: " + index);
+                }
+                return packages[neighborIds[start + index]];
+            }
+
+            public int size() {
+                return end - start;
+            }
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package jdepend.framework;
+
+/**
+ * The <code>PackageMetrics</code> class holds the metrics of all the
+ * packages of a <code>PackageGraph</code> in arrays indexed by package
+ * number, as they were when it was constructed.
+ * <p>
+ * It suits tools processing the metrics of many packages at once, which
+ * can read them without a method call per package and metric. The 
+ * returned arrays are those of this instance, and must not be changed.
+ */
+
+public class PackageMetrics {
+
+    private final PackageGraph graph;
+
+    private final int[] classCount;
+    private final int[] abstractClassCount;
+    private final int[] afferentCoupling;
+    private final int[] efferentCoupling;
+    private final float[] abstractness;
+    private final float[] instability;
+    private final float[] distance;
+    private final int[] volatility;
+
+
+    /**
+     * Constructs a <code>PackageMetrics</code> instance with the current
+     * metrics of the packages of the specified graph.
+     *
+     * @param graph Package graph.
+     */
+    public PackageMetrics(PackageGraph graph) {
+
+        this.graph = graph;
+
+        int size = graph.size();
+        classCount = new int[size];
+        abstractClassCount = new int[size];
+        afferentCoupling = new int[size];
+        efferentCoupling = new int[size];
+        abstractness = new float[size];
+        instability = new float[size];
+        distance = new float[size];
+        volatility = new int[size];
+
+        for (int id = 0; id < size; id++) {
+            JavaPackage jPackage = graph.getPackage(id);
+            classCount[id] = jPackage.getClassCount();
+            abstractClassCount[id] = jPackage.getAbstractClassCount();
+            afferentCoupling[id] = jPackage.afferentCoupling();
+            efferentCoupling[id] = jPackage.efferentCoupling();
+            abstractness[id] = jPackage.abstractness();
+            instability[id] = jPackage.instability();
+            distance[id] = jPackage.distance();
+            volatility[id] = jPackage.getVolatility();
+        }
+    }
+
+    /**
+     * Returns the graph whose package numbers index the metrics.
+     *
+     * @return Package graph.
+     */
+    public PackageGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of packages.
+     *
+     * @return Number of packages.
+     */
+    public int size() {
+        return classCount.length;
+    }
+
+    /**
+     * Returns the number of classes (CC + AC) of each package.
+     *
+     * @return Array indexed by package number.
+     */
+    public int[] getClassCounts() {
+        return classCount;
+    }
+
+    /**
+     * Returns the number of abstract classes and interfaces (AC) of
+     * each package.
+     *
+     * @return Array indexed by package number.
+     */
+    public int[] getAbstractClassCounts() {
+        return abstractClassCount;
+    }
+
+    /**
+     * Returns the afferent coupling (Ca) of each package.
+     *
+     * @return Array indexed by package number.
+     */
+    public int[] getAfferentCouplings() {
+        return afferentCoupling;
+    }
+
+    /**
+     * Returns the efferent coupling (Ce) of each package.
+     *
+     * @return Array indexed by package number.
+     */
+    public int[] getEfferentCouplings() {
+        return efferentCoupling;
+    }
+
+    /**
+     * Returns the abstractness (A) of each package.
+     *
+     * @return Array indexed by package number.
+     */
+    public float[] getAbstractness() {
+        return abstractness;
+    }
+
+    /**
+     * Returns the instability (I) of each package.
+     *
+     * @return Array indexed by package number.
+     */
+    public float[] getInstability() {
+        return instability;
+    }
+
+    /**
+     * Returns the distance from the main sequence (D) of each package.
+     *
+     * @return Array indexed by package number.
+     */
+    public float[] getDistances() {
+        return distance;
+    }
+
+    /**
+     * Returns the volatility (V) of each package.
+     *
+     * @return Array indexed by package number.
+     */
+    public int[] getVolatilities() {
+        return volatility;
+    }
+}
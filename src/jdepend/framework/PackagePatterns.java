@@ -0,0 +1,210 @@
+package jdepend.framework;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * The <code>PackagePatterns</code> class matches package names against
+ * patterns, each of which is identified by a number.
+ * <p>
+ * In a pattern, a <code>*</code> matches any part of a package name
+ * segment and a <code>**</code> segment matches any number of segments,
+ * as in <code>com.acme.*.internal</code> or <code>com.acme.**</code>. A
+ * pattern matches the whole package name.
+ * <p>
+ * The patterns are kept in a tree with a node per pattern segment, so
+ * that the literal segments of a package name are matched in one step
+ * each, however many patterns there are. Patterns can be shared by
+ * threads once added.
+ */
+
+class PackagePatterns {
+
+    private final Segment root = new Segment();
+
+
+    /**
+     * Adds the specified pattern.
+     *
+     * @param pattern Pattern.
+     * @param id Number identifying the pattern.
+     */
+    void add(String pattern, int id) {
+        Segment segment = root;
+        String[] names = split(pattern);
+        for (int i = 0; i < names.length; i++) {
+            segment = segment.getChild(names[i]);
+        }
+        if (segment.ids == null) {
+            segment.ids = new BitSet();
+        }
+        segment.ids.set(id);
+    }
+
+    /**
+     * Indicates whether a pattern matches the specified package name.
+     *
+     * @param packageName Package name.
+     * @return <code>true</code> if a pattern matches.
+     */
+    boolean matches(String packageName) {
+        return root.match(split(packageName), 0, null);
+    }
+
+    /**
+     * Returns the numbers of the patterns matching the specified package
+     * name.
+     *
+     * @param packageName Package name.
+     * @return Set of pattern numbers.
+     */
+    BitSet match(String packageName) {
+        BitSet ids = new BitSet();
+        root.match(split(packageName), 0, ids);
+        return ids;
+    }
+
+    private static String[] split(String name) {
+        List names = new ArrayList();
+        int start = 0;
+        int end;
+        while ((end = name.indexOf('.', start)) >= 0) {
+            names.add(name.substring(start, end));
+            start = end + 1;
+        }
+        names.add(name.substring(start));
+        return (String[])names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * A pattern segment, with the segments following it. The name
+     * segments of a package are matched by the literal segments with
+     * their names, then by the segments with wildcards.
+     */
+    private static class Segment {
+
+        private final Map literals = new HashMap();
+        private final List wildcards = new ArrayList();
+        private Segment anySegments;
+        private String glob;
+        private String prefix;
+        private Pattern pattern;
+        private BitSet ids;
+
+        Segment getChild(String name) {
+
+            if (name.equals("**")) {
+                if (anySegments == null) {
+                    anySegments = new Segment();
+                }
+                return anySegments;
+            }
+
+            if (name.indexOf('*') < 0) {
+                Segment child = (Segment)literals.get(name);
+                if (child == null) {
+                    child = new Segment();
+                    literals.put(name, child);
+                }
+                return child;
+            }
+
+            for (Iterator i = wildcards.iterator(); i.hasNext();) {
+                Segment child = (Segment)i.next();
+                if (name.equals(child.glob)) {
+                    return child;
+                }
+            }
+
+            Segment child = new Segment();
+            child.glob = name;
+            int star = name.indexOf('*');
+            if (star == name.length() - 1) {
+                child.prefix = name.substring(0, star);
+            } else {
+                child.pattern = Pattern.compile(toRegex(name));
+            }
+            wildcards.add(child);
+            return child;
+        }
+
+        /**
+         * Matches the package name segments from the specified index
+         * against the patterns continuing from this segment, adding the
+         * numbers of the matching patterns to the specified set.
+         *
+         * @param ids Set of pattern numbers; <code>null</code> to stop at
+         *        the first matching pattern.
+         * @return <code>true</code> if a pattern matches.
+         */
+        boolean match(String[] names, int index, BitSet ids) {
+
+            boolean matched = false;
+
+            if (index == names.length && this.ids != null) {
+                if (ids == null) {
+                    return true;
+                }
+                ids.or(this.ids);
+                matched = true;
+            }
+
+            if (anySegments != null) {
+                for (int i = index; i <= names.length; i++) {
+                    if (anySegments.match(names, i, ids)) {
+                        if (ids == null) {
+                            return true;
+                        }
+                        matched = true;
+                    }
+                }
+            }
+
+            if (index == names.length) {
+                return matched;
+            }
+
+            String name = names[index];
+            Segment literal = (Segment)literals.get(name);
+            if (literal != null && literal.match(names, index + 1, ids)) {
+                if (ids == null) {
+                    return true;
+                }
+                matched = true;
+            }
+
+            for (Iterator i = wildcards.iterator(); i.hasNext();) {
+                Segment wildcard = (Segment)i.next();
+                if (wildcard.matchesName(name) &&
+                    wildcard.match(names, index + 1, ids)) {
+                    if (ids == null) {
+                        return true;
+                    }
+                    matched = true;
+                }
+            }
+
+            return matched;
+        }
+
+        private boolean matchesName(String name) {
+            if (prefix != null) {
+                return name.startsWith(prefix);
+            }
+            return pattern.matcher(name).matches();
+        }
+
+        private static String toRegex(String name) {
+            StringBuffer regex = new StringBuffer();
+            int start = 0;
+            int star;
+            while ((star = name.indexOf('*', start)) >= 0) {
+                regex.append(Pattern.quote(name.substring(start, star)));
+                regex.append(".*");
+                start = star + 1;
+            }
+            regex.append(Pattern.quote(name.substring(start)));
+            return regex.toString();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package jdepend.framework;
+
+import java.util.HashMap;
+
+/**
+ * The <code>PackageRegistry</code> class maps package names to
+ * canonical <code>JavaPackage</code> instances.
+ * <p>
+ * Parsers sharing a registry report the imported packages of the
+ * classes they parse as canonical instances, so a package referenced by
+ * many classes exists only once during an analysis.
+ * <p>
+ * A registry can be shared by parsers running in different threads.
+ */
+
+public class PackageRegistry {
+
+    private HashMap packages;
+
+
+    public PackageRegistry() {
+        packages = new HashMap();
+    }
+
+    /**
+     * Returns the canonical package with the specified name, creating
+     * it if the name was not registered before.
+     *
+     * @param name Package name.
+     * @return Canonical package.
+     */
+    public synchronized JavaPackage getPackage(String name) {
+        JavaPackage pkg = (JavaPackage) packages.get(name);
+        if (pkg == null) {
+            pkg = new JavaPackage(name);
+            packages.put(name, pkg);
+        }
+        return pkg;
+    }
+
+    /**
+     * Registers the specified package as the canonical package with
+     * its name, unless a package with that name is already registered.
+     *
+     * @param pkg Package.
+     * @return Canonical package with the name of the specified package.
+     */
+    public synchronized JavaPackage addPackage(JavaPackage pkg) {
+        JavaPackage registered = (JavaPackage) packages.get(pkg.getName());
+        if (registered == null) {
+            packages.put(pkg.getName(), pkg);
+            registered = pkg;
+        }
+        return registered;
+    }
+
+    /**
+     * Returns the number of registered packages.
+     */
+    public synchronized int size() {
+        return packages.size();
+    }
+}
@@ -0,0 +1,401 @@
+package jdepend.framework;
+
+import java.util.*;
+
+/**
+ * The <code>PackageRollup</code> class holds the metrics of every package
+ * name prefix of the packages of a <code>PackageGraph</code>, such as
+ * <code>com.acme</code> and <code>com.acme.billing</code> for the
+ * package <code>com.acme.billing.api</code>.
+ * <p>
+ * The metrics of a prefix are those of the component it would be if all
+ * the prefixes with as many name segments were components: it holds the
+ * classes of its packages and subpackages, and is coupled to the other
+ * components, and to the shorter packages, its packages depend upon or
+ * are used by. The dependencies between the prefixes of each depth are
+ * derived from those of the next depth, from the longest package names
+ * up, so that all depths are measured in one pass.
+ * <p>
+ * Prefixes are numbered in the order of their names, so that a prefix
+ * comes before the prefixes it contains. The returned arrays are indexed
+ * by prefix number, and must not be changed.
+ */
+
+public class PackageRollup {
+
+    private final PackageGraph graph;
+
+    private final String[] names;
+    private final Map ids;
+    private final int[] depth;
+    private final int[] parent;
+    private int maxDepth;
+
+    private final int[] classCount;
+    private final int[] abstractClassCount;
+    private final int[] afferentCoupling;
+    private final int[] efferentCoupling;
+    private final float[] abstractness;
+    private final float[] instability;
+    private final float[] distance;
+    private final boolean[] cyclic;
+
+
+    /**
+     * Constructs a <code>PackageRollup</code> instance with the current
+     * metrics of the package name prefixes of the packages of the
+     * specified graph.
+     *
+     * @param graph Package graph.
+     */
+    public PackageRollup(PackageGraph graph) {
+
+        this.graph = graph;
+
+        Set prefixes = new TreeSet();
+        for (int id = 0; id < graph.size(); id++) {
+            String name = graph.getPackage(id).getName();
+            for (int dot = name.indexOf('.'); dot >= 0;
+                    dot = name.indexOf('.', dot + 1)) {
+                prefixes.add(name.substring(0, dot));
+            }
+            prefixes.add(name);
+        }
+
+        int size = prefixes.size();
+        names = (String[])prefixes.toArray(new String[size]);
+        ids = new HashMap();
+        depth = new int[size];
+        parent = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids.put(names[i], Integer.valueOf(i));
+            int dot = names[i].lastIndexOf('.');
+            if (dot < 0) {
+                depth[i] = 1;
+                parent[i] = -1;
+            } else {
+                parent[i] = getId(names[i].substring(0, dot));
+                depth[i] = depth[parent[i]] + 1;
+            }
+            maxDepth = Math.max(maxDepth, depth[i]);
+        }
+
+        classCount = new int[size];
+        abstractClassCount = new int[size];
+        afferentCoupling = new int[size];
+        efferentCoupling = new int[size];
+        abstractness = new float[size];
+        instability = new float[size];
+        distance = new float[size];
+        cyclic = new boolean[size];
+
+        boolean[] isVolatile = new boolean[size];
+        int[] prefixIds = new int[graph.size()];
+        for (int id = 0; id < graph.size(); id++) {
+            JavaPackage jPackage = graph.getPackage(id);
+            int prefix = getId(jPackage.getName());
+            prefixIds[id] = prefix;
+            classCount[prefix] += jPackage.getClassCount();
+            abstractClassCount[prefix] += jPackage.getAbstractClassCount();
+            isVolatile[prefix] |= jPackage.getVolatility() > 0;
+        }
+
+        for (int i = size - 1; i >= 0; i--) {
+            if (parent[i] >= 0) {
+                classCount[parent[i]] += classCount[i];
+                abstractClassCount[parent[i]] += abstractClassCount[i];
+                isVolatile[parent[i]] |= isVolatile[i];
+            }
+        }
+
+        long[] dependencies = new long[graph.efferentIds.length];
+        int count = 0;
+        for (int id = 0; id < graph.size(); id++) {
+            for (int j = graph.efferentStarts[id];
+                    j < graph.efferentStarts[id + 1]; j++) {
+                int from = prefixIds[id];
+                int to = prefixIds[graph.efferentIds[j]];
+                if (from != to) {
+                    dependencies[count++] = toDependency(from, to);
+                }
+            }
+        }
+
+        for (int level = maxDepth; level > 0; level--) {
+            count = sort(dependencies, count);
+            measure(level, dependencies, count);
+            count = lift(level, dependencies, count);
+        }
+
+        for (int i = 0; i < size; i++) {
+            float totalCoupling = afferentCoupling[i] + efferentCoupling[i];
+            if (totalCoupling > 0) {
+                instability[i] = efferentCoupling[i] / totalCoupling;
+            }
+            if (classCount[i] > 0) {
+                abstractness[i] =
+                    (float) abstractClassCount[i] / (float) classCount[i];
+            }
+            if (isVolatile[i]) {
+                distance[i] = Math.abs(abstractness[i] + instability[i] - 1);
+            }
+        }
+    }
+
+    private static long toDependency(int from, int to) {
+        return ((long) from << 32) | to;
+    }
+
+    private static int getFrom(long dependency) {
+        return (int) (dependency >>> 32);
+    }
+
+    private static int getTo(long dependency) {
+        return (int) dependency;
+    }
+
+    /**
+     * Sorts the dependencies by depending prefix, leaving out duplicates.
+     *
+     * @return Number of distinct dependencies.
+     */
+    private static int sort(long[] dependencies, int count) {
+        Arrays.sort(dependencies, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 ||
+                dependencies[distinct - 1] != dependencies[i]) {
+                dependencies[distinct++] = dependencies[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Measures the couplings and cycles of the prefixes of the specified
+     * depth from the dependencies between prefixes of at most that depth.
+     */
+    private void measure(int level, long[] dependencies, int count) {
+
+        int[] starts = new int[names.length + 1];
+        int[] efferents = new int[count];
+        for (int i = 0; i < count; i++) {
+            int from = getFrom(dependencies[i]);
+            int to = getTo(dependencies[i]);
+            starts[from + 1]++;
+            efferents[i] = to;
+            if (depth[from] == level) {
+                efferentCoupling[from]++;
+            }
+            if (depth[to] == level) {
+                afferentCoupling[to]++;
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            starts[i + 1] += starts[i];
+        }
+
+        int[] components = new int[names.length];
+        int componentCount = CycleDetector.findComponents(
+            starts, efferents, components);
+        int[] members = new int[componentCount + 1];
+        for (int i = 0; i < names.length; i++) {
+            members[components[i] + 1]++;
+        }
+        boolean[] componentCyclic = new boolean[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            componentCyclic[c] = members[c + 1] > 1;
+            members[c + 1] += members[c];
+        }
+
+        int[] order = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            order[members[components[i]]++] = i;
+        }
+        for (int k = 0; k < names.length; k++) {
+            int i = order[k];
+            for (int j = starts[i]; j < starts[i + 1]; j++) {
+                componentCyclic[components[i]] |= 
+                    componentCyclic[components[efferents[j]]];
+            }
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            if (depth[i] == level) {
+                cyclic[i] = componentCyclic[components[i]];
+            }
+        }
+    }
+
+    /**
+     * Replaces the prefixes of the specified depth by their parents in
+     * the dependencies, leaving out those which become internal.
+     *
+     * @return Number of remaining dependencies.
+     */
+    private int lift(int level, long[] dependencies, int count) {
+        int remaining = 0;
+        for (int i = 0; i < count; i++) {
+            int from = getFrom(dependencies[i]);
+            int to = getTo(dependencies[i]);
+            if (depth[from] == level) {
+                from = parent[from];
+            }
+            if (depth[to] == level) {
+                to = parent[to];
+            }
+            if (from != to && from >= 0 && to >= 0) {
+                dependencies[remaining++] = toDependency(from, to);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Returns the graph of the rolled up packages.
+     *
+     * @return Package graph.
+     */
+    public PackageGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of prefixes.
+     *
+     * @return Number of prefixes.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the number of the specified prefix.
+     *
+     * @param name Prefix.
+     * @return Prefix number, or <code>-1</code> if no package name starts
+     *         with the prefix.
+     */
+    public int getId(String name) {
+        Integer id = (Integer)ids.get(name);
+        return id == null ? -1 : id.intValue();
+    }
+
+    /**
+     * Returns the prefix with the specified number.
+     *
+     * @param id Prefix number.
+     * @return Prefix.
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the number of name segments of the prefix with the
+     * specified number.
+     *
+     * @param id Prefix number.
+     * @return Depth, from <code>1</code>.
+     */
+    public int getDepth(int id) {
+        return depth[id];
+    }
+
+    /**
+     * Returns the number of the prefix containing the prefix with the
+     * specified number.
+     *
+     * @param id Prefix number.
+     * @return Prefix number, or <code>-1</code> if the prefix has a single
+     *         name segment.
+     */
+    public int getParent(int id) {
+        return parent[id];
+    }
+
+    /**
+     * Returns the largest number of name segments of the prefixes.
+     *
+     * @return Maximum depth.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the number of classes (CC + AC) of each prefix.
+     *
+     * @return Array indexed by prefix number.
+     */
+    public int[] getClassCounts() {
+        return classCount;
+    }
+
+    /**
+     * Returns the number of abstract classes and interfaces (AC) of
+     * each prefix.
+     *
+     * @return Array indexed by prefix number.
+     */
+    public int[] getAbstractClassCounts() {
+        return abstractClassCount;
+    }
+
+    /**
+     * Returns the afferent coupling (Ca) of each prefix.
+     *
+     * @return Array indexed by prefix number.
+     */
+    public int[] getAfferentCouplings() {
+        return afferentCoupling;
+    }
+
+    /**
+     * Returns the efferent coupling (Ce) of each prefix.
+     *
+     * @return Array indexed by prefix number.
+     */
+    public int[] getEfferentCouplings() {
+        return efferentCoupling;
+    }
+
+    /**
+     * Returns the abstractness (A) of each prefix.
+     *
+     * @return Array indexed by prefix number.
+     */
+    public float[] getAbstractness() {
+        return abstractness;
+    }
+
+    /**
+     * Returns the instability (I) of each prefix.
+     *
+     * @return Array indexed by prefix number.
+     */
+    public float[] getInstability() {
+        return instability;
+    }
+
+    /**
+     * Returns the distance from the main sequence (D) of each prefix.
+     *
+     * @return Array indexed by prefix number.
+     */
+    public float[] getDistances() {
+        return distance;
+    }
+
+    /**
+     * Returns whether each prefix participates in a dependency cycle
+     * with the other prefixes, and packages, of its depth, or depends
+     * upon a prefix or package which does, as 
+     * <code>JavaPackage.containsCycle()</code> tells for components.
+     *
+     * @return Array indexed by prefix number.
+     */
+    public boolean[] getCycles() {
+        return cyclic;
+    }
+}
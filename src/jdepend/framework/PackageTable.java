@@ -0,0 +1,147 @@
+package jdepend.framework;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+/**
+ * The <code>PackageTable</code> class is a symbol table of packages,
+ * keyed on the bytes of their modified UTF-8 encoding in a class file,
+ * in which the package segments are separated by slashes.
+ * <p>
+ * Looking up a package that is already in the table compares bytes
+ * only. The first time a package is looked up, its name is decoded and
+ * its canonical <code>JavaPackage</code> is obtained from the package
+ * registry.
+ */
+
+class PackageTable {
+
+    private PackageRegistry registry;
+    private Entry[] table;
+    private int size;
+
+
+    PackageTable(PackageRegistry registry) {
+        this.registry = registry;
+        table = new Entry[256];
+    }
+
+    PackageRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns the canonical package encoded by the specified bytes
+     * of the buffer, in which the package segments are separated
+     * by slashes.
+     *
+     * @param buffer Buffer holding the encoded package.
+     * @param offset Offset of the first byte of the encoded package.
+     * @param length Length of the encoded package.
+     * @return Canonical package.
+     * @throws UTFDataFormatException If the bytes are not valid
+     *         modified UTF-8.
+     */
+    JavaPackage getPackage(ByteBuffer buffer, int offset, int length)
+            throws UTFDataFormatException {
+
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+
+        int index = hash & (table.length - 1);
+        for (Entry e = table[index]; e != null; e = e.next) {
+            if (e.hash == hash && e.matches(buffer, offset, length)) {
+                return e.jPackage;
+            }
+        }
+
+        byte[] key = new byte[length];
+        for (int i = 0; i < length; i++) {
+            key[i] = buffer.get(offset + i);
+        }
+
+        Entry entry = new Entry(hash, key,
+            registry.getPackage(decode(key)));
+        entry.next = table[index];
+        table[index] = entry;
+
+        if (++size > table.length * 3 / 4) {
+            rehash();
+        }
+
+        return entry.jPackage;
+    }
+
+    private void rehash() {
+        Entry[] rehashed = new Entry[table.length * 2];
+        for (int i = 0; i < table.length; i++) {
+            Entry e = table[i];
+            while (e != null) {
+                Entry next = e.next;
+                int index = e.hash & (rehashed.length - 1);
+                e.next = rehashed[index];
+                rehashed[index] = e;
+                e = next;
+            }
+        }
+        table = rehashed;
+    }
+
+    /**
+     * Decodes the specified modified UTF-8 bytes, replacing
+     * slashes with dots.
+     */
+    private static String decode(byte[] key) throws UTFDataFormatException {
+        char[] chars = new char[key.length];
+        int count = 0;
+        int offset = 0;
+
+        while (offset < key.length) {
+            int b = key[offset++] & 0xFF;
+            if (b == '/') {
+                chars[count++] = '.';
+            } else if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0 && offset < key.length) {
+                int b2 = key[offset++] & 0x3F;
+                chars[count++] = (char) (((b & 0x1F) << 6) | b2);
+            } else if ((b & 0xF0) == 0xE0 && offset + 1 < key.length) {
+                int b2 = key[offset++] & 0x3F;
+                int b3 = key[offset++] & 0x3F;
+                chars[count++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+            } else {
+                throw new UTFDataFormatException("Malformed package name");
+            }
+        }
+
+        return new String(chars, 0, count);
+    }
+
+    private static class Entry {
+
+        private final int hash;
+        private final byte[] key;
+        private final JavaPackage jPackage;
+        private Entry next;
+
+        Entry(int hash, byte[] key, JavaPackage jPackage) {
+            this.hash = hash;
+            this.key = key;
+            this.jPackage = jPackage;
+        }
+
+        boolean matches(ByteBuffer buffer, int offset, int length) {
+            if (key.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (key[i] != buffer.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package jdepend.framework;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>ParseCache</code> class keeps the classes parsed by a
+ * <code>JavaClassBuilder</code> in a directory, so that the class files
+ * which did not change since a previous analysis are not parsed again.
+ * <p>
+ * A class file is identified by its path, and is considered unchanged
+ * if its size and modification time are. An entry of a jar file is
+ * identified by the path of the jar file and the name of the entry, and
+ * is considered unchanged if its size and CRC-32 checksum, read from
+ * the central directory of the jar file, are.
+ * <p>
+ * The cache is loaded when it is first used, and is written back by
+ * <code>save</code>, keeping only the classes used since it was loaded.
+ * Classes cached with another package filter, or other parser settings,
+ * are discarded.
+ * <p>
+ * A cache can be shared by threads building classes concurrently, and
+ * its file is written to a temporary file which is then moved in place,
+ * so it is never left partly written.
+ */
+
+public class ParseCache {
+
+    /**
+     * Name of the file holding the cached classes.
+     */
+    public static final String FILE_NAME = "jdepend.cache";
+
+    private static final int MAGIC = 0x4A444350;
+    private static final int VERSION = 1;
+
+    private File file;
+    private String configuration;
+    private Map entries;
+    private Map used;
+    private boolean loaded;
+
+
+    /**
+     * Constructs a <code>ParseCache</code> instance keeping the parsed
+     * classes in the specified directory.
+     *
+     * @param directory Cache directory, created when the cache is saved.
+     */
+    public ParseCache(File directory) {
+        this.file = new File(directory, FILE_NAME);
+        this.entries = new ConcurrentHashMap();
+        this.used = new ConcurrentHashMap();
+    }
+
+    /**
+     * Returns the file holding the cached classes.
+     *
+     * @return Cache file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Discards all cached classes, in memory and on disk, so that
+     * every class is parsed again.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        used.clear();
+        loaded = true;
+        file.delete();
+    }
+
+    /**
+     * Writes the classes used since the cache was loaded to the
+     * cache directory.
+     *
+     * @throws IOException If the cache cannot be written.
+     */
+    public synchronized void save() throws IOException {
+
+        if (configuration == null) {
+            return;
+        }
+
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() &&
+            !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Cannot create cache directory: " +
+                directory.getPath());
+        }
+
+        List usedEntries = new ArrayList(used.values());
+        Map packageIds = new HashMap();
+        List packageNames = new ArrayList();
+        for (Iterator i = usedEntries.iterator(); i.hasNext();) {
+            Entry entry = (Entry)i.next();
+            addPackageName(entry.packageName, packageIds, packageNames);
+            for (int j = 0; j < entry.imports.length; j++) {
+                addPackageName(entry.imports[j], packageIds, packageNames);
+            }
+        }
+
+        File temporary = File.createTempFile(FILE_NAME, ".tmp", directory);
+        try {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)));
+            try {
+                write(out, usedEntries, packageIds, packageNames);
+            } finally {
+                out.close();
+            }
+            move(temporary, file);
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    private void write(DataOutputStream out, List usedEntries,
+        Map packageIds, List packageNames) throws IOException {
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(configuration);
+
+        out.writeInt(packageNames.size());
+        for (Iterator i = packageNames.iterator(); i.hasNext();) {
+            out.writeUTF((String)i.next());
+        }
+
+        out.writeInt(usedEntries.size());
+        for (Iterator i = usedEntries.iterator(); i.hasNext();) {
+            Entry entry = (Entry)i.next();
+            out.writeUTF(entry.key);
+            out.writeLong(entry.size);
+            out.writeLong(entry.stamp);
+            out.writeUTF(entry.className);
+            out.writeInt(getPackageId(entry.packageName, packageIds));
+            out.writeBoolean(entry.isAbstract);
+            out.writeUTF(entry.sourceFile);
+            out.writeInt(entry.imports.length);
+            for (int j = 0; j < entry.imports.length; j++) {
+                out.writeInt(getPackageId(entry.imports[j], packageIds));
+            }
+        }
+    }
+
+    private void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Prepares the cache for classes parsed with the specified settings,
+     * loading the cache file if it was not loaded yet, and discarding the
+     * classes cached with other settings.
+     *
+     * @param configuration Description of the parser settings.
+     */
+    synchronized void open(String configuration) {
+
+        if (!loaded) {
+            loaded = true;
+            try {
+                load();
+            } catch (IOException e) {
+                entries.clear();
+                this.configuration = null;
+            }
+        }
+
+        if (!configuration.equals(this.configuration)) {
+            entries.clear();
+            used.clear();
+            this.configuration = configuration;
+        }
+    }
+
+    /**
+     * Returns the cached class with the specified key, size, and stamp,
+     * or <code>null</code> if it is not cached or has changed.
+     *
+     * @param key Path of the class file, or of the jar file entry.
+     * @param size Size of the class file.
+     * @param stamp Modification time or checksum of the class file.
+     * @param registry Registry of the imported packages.
+     * @return Cached class, or <code>null</code>.
+     */
+    JavaClass get(String key, long size, long stamp,
+        PackageRegistry registry) {
+
+        Entry entry = (Entry)used.get(key);
+        if (entry == null) {
+            entry = (Entry)entries.get(key);
+        }
+        if (entry == null || entry.size != size || entry.stamp != stamp) {
+            return null;
+        }
+        used.put(key, entry);
+
+        JavaClass jClass = new JavaClass(entry.className);
+        jClass.setPackageName(entry.packageName);
+        jClass.isAbstract(entry.isAbstract);
+        jClass.setSourceFile(entry.sourceFile);
+        for (int i = 0; i < entry.imports.length; i++) {
+            jClass.addImportedPackage(registry.getPackage(entry.imports[i]));
+        }
+
+        return jClass;
+    }
+
+    /**
+     * Caches the specified parsed class.
+     *
+     * @param key Path of the class file, or of the jar file entry.
+     * @param size Size of the class file.
+     * @param stamp Modification time or checksum of the class file.
+     * @param jClass Parsed class.
+     */
+    void put(String key, long size, long stamp,
+        JavaClass jClass) {
+
+        Collection imports = jClass.getImportedPackages();
+        String[] importNames = new String[imports.size()];
+        int index = 0;
+        for (Iterator i = imports.iterator(); i.hasNext();) {
+            importNames[index++] = ((JavaPackage)i.next()).getName();
+        }
+
+        used.put(key, new Entry(key, size, stamp, jClass.getName(),
+            jClass.getPackageName(), jClass.isAbstract(),
+            jClass.getSourceFile(), importNames));
+    }
+
+    private void load() throws IOException {
+
+        if (!file.isFile()) {
+            return;
+        }
+
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)));
+        try {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            configuration = in.readUTF();
+
+            String[] packageNames = new String[in.readInt()];
+            for (int i = 0; i < packageNames.length; i++) {
+                packageNames[i] = in.readUTF();
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long stamp = in.readLong();
+                String className = in.readUTF();
+                String packageName = packageNames[in.readInt()];
+                boolean isAbstract = in.readBoolean();
+                String sourceFile = in.readUTF();
+                String[] imports = new String[in.readInt()];
+                for (int j = 0; j < imports.length; j++) {
+                    imports[j] = packageNames[in.readInt()];
+                }
+                entries.put(key, new Entry(key, size, stamp, className,
+                    packageName, isAbstract, sourceFile, imports));
+            }
+
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid cache file: " + file.getPath());
+        } finally {
+            in.close();
+        }
+    }
+
+    private void addPackageName(String name, Map packageIds,
+        List packageNames) {
+        if (!packageIds.containsKey(name)) {
+            packageIds.put(name, Integer.valueOf(packageNames.size()));
+            packageNames.add(name);
+        }
+    }
+
+    private int getPackageId(String name, Map packageIds) {
+        return ((Integer)packageIds.get(name)).intValue();
+    }
+
+    /**
+     * A cached class.
+     */
+    private static class Entry {
+
+        private final String key;
+        private final long size;
+        private final long stamp;
+        private final String className;
+        private final String packageName;
+        private final boolean isAbstract;
+        private final String sourceFile;
+        private final String[] imports;
+
+        Entry(String key, long size, long stamp, String className,
+            String packageName, boolean isAbstract, String sourceFile,
+            String[] imports) {
+            this.key = key;
+            this.size = size;
+            this.stamp = stamp;
+            this.className = className;
+            this.packageName = packageName;
+            this.isAbstract = isAbstract;
+            this.sourceFile = sourceFile;
+            this.imports = imports;
+        }
+    }
+}
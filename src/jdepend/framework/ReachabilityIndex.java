@@ -0,0 +1,157 @@
+package jdepend.framework;
+
+import java.io.PrintWriter;
+
+/**
+ * The <code>ReachabilityIndex</code> class answers whether a package
+ * depends upon another package, directly or through other packages, in
+ * constant time.
+ * <p>
+ * The packages of a <code>PackageGraph</code> are grouped into their
+ * strongly connected components, the groups of packages which depend
+ * upon each other, and each component keeps a bit set of the components
+ * it depends upon. The sets are built in a single pass over the
+ * components, each one being the union of those of the components it
+ * depends upon directly, so the index takes one bit per pair of
+ * components.
+ */
+
+public class ReachabilityIndex {
+
+    private final PackageGraph graph;
+    private final int[] components;
+    private final boolean[] cyclic;
+    private final long[][] reachable;
+
+
+    /**
+     * Constructs a <code>ReachabilityIndex</code> instance of the
+     * specified graph.
+     *
+     * @param graph Package graph.
+     */
+    public ReachabilityIndex(PackageGraph graph) {
+
+        this.graph = graph;
+        this.components = new int[graph.size()];
+
+        int count = CycleDetector.findComponents(graph.efferentStarts,
+            graph.efferentIds, components);
+        this.cyclic = new boolean[count];
+        this.reachable = new long[count][];
+
+        int[] members = new int[count];
+        for (int i = 0; i < components.length; i++) {
+            members[components[i]]++;
+        }
+
+        int[] order = sortByComponent(count);
+        int words = (count + 63) >>> 6;
+
+        for (int c = 0, start = 0; c < count; start += members[c], c++) {
+            long[] bits = new long[words];
+            cyclic[c] = members[c] > 1;
+            for (int i = start; i < start + members[c]; i++) {
+                int id = order[i];
+                for (int j = graph.efferentStarts[id];
+                        j < graph.efferentStarts[id + 1]; j++) {
+                    int other = components[graph.efferentIds[j]];
+                    if (other != c && (bits[other >>> 6] &
+                            (1L << other)) == 0) {
+                        bits[other >>> 6] |= 1L << other;
+                        long[] otherBits = reachable[other];
+                        for (int k = 0; k < words; k++) {
+                            bits[k] |= otherBits[k];
+                        }
+                    }
+                }
+            }
+            reachable[c] = bits;
+        }
+    }
+
+    /**
+     * Returns the graph of this index.
+     *
+     * @return Package graph.
+     */
+    public PackageGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Indicates whether the package with the specified number depends
+     * upon the other, directly or through other packages. A package
+     * depends upon itself only if it participates in a cycle.
+     *
+     * @param from Number of the depending package.
+     * @param to Number of the package depended upon.
+     * @return <code>true</code> if <code>from</code> depends upon
+     *         <code>to</code>.
+     */
+    public boolean dependsTransitively(int from, int to) {
+        int c = components[from];
+        int other = components[to];
+        if (c == other) {
+            return cyclic[c];
+        }
+        return (reachable[c][other >>> 6] & (1L << other)) != 0;
+    }
+
+    /**
+     * Indicates whether the specified package depends upon the other,
+     * directly or through other packages.
+     *
+     * @param from Depending package.
+     * @param to Package depended upon.
+     * @return <code>true</code> if <code>from</code> depends upon
+     *         <code>to</code>; <code>false</code> otherwise, or if
+     *         either package is not part of the graph.
+     */
+    public boolean dependsTransitively(JavaPackage from, JavaPackage to) {
+        int fromId = graph.getId(from);
+        int toId = graph.getId(to);
+        if (fromId < 0 || toId < 0) {
+            return false;
+        }
+        return dependsTransitively(fromId, toId);
+    }
+
+    /**
+     * Writes each pair of packages of which the first depends upon the
+     * second, directly or through other packages, as a line with their
+     * names separated by a comma.
+     *
+     * @param writer Writer.
+     */
+    public void writePairs(PrintWriter writer) {
+        for (int from = 0; from < components.length; from++) {
+            String name = graph.getPackage(from).getName();
+            for (int to = 0; to < components.length; to++) {
+                if (dependsTransitively(from, to)) {
+                    writer.println(name + "," +
+                        graph.getPackage(to).getName());
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns the package numbers ordered by component.
+     */
+    private int[] sortByComponent(int count) {
+        int[] starts = new int[count + 1];
+        for (int i = 0; i < components.length; i++) {
+            starts[components[i] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            starts[c + 1] += starts[c];
+        }
+        int[] order = new int[components.length];
+        for (int i = 0; i < components.length; i++) {
+            order[starts[components[i]]++] = i;
+        }
+        return order;
+    }
+}
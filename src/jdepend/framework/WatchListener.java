@@ -0,0 +1,24 @@
+package jdepend.framework;
+
+import java.util.Collection;
+
+/**
+ * The <code>WatchListener</code> interface defines a listener notified
+ * whenever <code>JDepend</code>, watching the analyzed directories, has
+ * analyzed changed class files.
+ * <p>
+ * Implementers of this interface are passed to the
+ * <code>JDepend.watch()</code> method.
+ */
+
+public interface WatchListener {
+
+    /**
+     * Called whenever changed class files were analyzed.
+     * 
+     * @param changedPackages Packages whose classes, afferents, or
+     *        efferents changed.
+     */
+    public void onPackagesChanged(Collection changedPackages);
+
+}
@@ -107,6 +107,15 @@ public class JDepend implements ParserListener {
     public void setComponents(String components) {
         analyzer.setComponents(components);
     }
+
+    /**
+     * Sets the number of threads parsing class files.
+     * 
+     * @param threads Number of threads.
+     */
+    public void setThreads(int threads) {
+        analyzer.setThreads(threads);
+    }
     
     /**
      * Analyzes the registered directories, generates metrics for each Java
@@ -511,6 +520,7 @@ public class JDepend implements ParserListener {
         System.err.println("");
         System.err.println("usage: ");
         System.err.println(baseUsage + "-components <components> " +
+            "[-threads <threads>] " +
             "<directory> [directory2 [directory 3] ...]");
         System.exit(1);
     }
@@ -530,6 +540,15 @@ public class JDepend implements ParserListener {
                         usage("Components not specified.");
                     }
                     setComponents(args[++i]);
+                } else if (args[i].equalsIgnoreCase("-threads")) {
+                    if (args.length <= i + 1) {
+                        usage("Number of threads not specified.");
+                    }
+                    try {
+                        setThreads(Integer.parseInt(args[++i]));
+                    } catch (IllegalArgumentException iae) {
+                        usage("Invalid number of threads: " + args[i]);
+                    }
                 } else {
                     usage("Invalid argument: " + args[i]);
                 }
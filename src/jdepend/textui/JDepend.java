@@ -4,10 +4,15 @@ import java.io.*;
 import java.util.*;
 import java.text.NumberFormat;
 
+import jdepend.framework.CycleEnumerator;
+import jdepend.framework.CycleListener;
 import jdepend.framework.JavaClass;
 import jdepend.framework.JavaPackage;
 import jdepend.framework.PackageComparator;
 import jdepend.framework.PackageFilter;
+import jdepend.framework.PackageRollup;
+import jdepend.framework.ParseCache;
+import jdepend.framework.WatchListener;
 
 /**
  * The <code>JDepend</code> class analyzes directories of Java class files,
@@ -24,6 +29,10 @@ public class JDepend {
 
     private PrintWriter writer;
 
+    private CycleEnumerator cycleEnumerator;
+
+    private int rollupDepth;
+
     protected NumberFormat formatter;
 
     /**
@@ -75,6 +84,60 @@ public class JDepend {
     public void setComponents(String components) {
         analyzer.setComponents(components);
     }
+
+    /**
+     * Sets the number of threads parsing class files.
+     * 
+     * @param threads Number of threads.
+     */
+    public void setThreads(int threads) {
+        analyzer.setThreads(threads);
+    }
+
+    /**
+     * Sets the enumerator reporting the elementary package dependency
+     * cycles, rather than the first cycle found from each package.
+     * 
+     * @param enumerator Cycle enumerator; <code>null</code> to report
+     *        the first cycle found from each package.
+     */
+    public void setCycleEnumerator(CycleEnumerator enumerator) {
+        this.cycleEnumerator = enumerator;
+    }
+
+    /**
+     * Sets the number of package name segments up to which the metrics
+     * of the package name prefixes are reported.
+     * 
+     * @param depth Maximum prefix depth; <code>0</code> to report no
+     *        prefixes.
+     */
+    public void setRollupDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException(
+                "Invalid roll-up depth: " + depth);
+        }
+        this.rollupDepth = depth;
+    }
+
+    /**
+     * Sets the directory of the cache of parsed classes.
+     * 
+     * @param directory Cache directory.
+     */
+    public void setCacheDirectory(String directory) {
+        analyzer.setParseCache(new ParseCache(new File(directory)));
+    }
+
+    /**
+     * Discards the classes in the cache of parsed classes, so that all
+     * classes are parsed again.
+     */
+    public void clearCache() {
+        if (analyzer.getParseCache() != null) {
+            analyzer.getParseCache().clear();
+        }
+    }
     
     /**
      * Adds the specified directory name to the collection of directories to be
@@ -102,10 +165,28 @@ public class JDepend {
      * package, and reports the metrics.
      */
     public void analyze() {
+        report(analyzer.analyze());
+    }
 
-        printHeader();
+    /**
+     * Analyzes the registered directories whenever their class files
+     * change, reporting the metrics again after each change, until the
+     * calling thread is interrupted.
+     * 
+     * @throws IOException If the directories cannot be watched.
+     */
+    public void watch() throws IOException {
+        analyzer.watch(new WatchListener() {
 
-        Collection packages = analyzer.analyze();
+            public void onPackagesChanged(Collection changedPackages) {
+                report(analyzer.getPackages());
+            }
+        });
+    }
+
+    private void report(Collection packages) {
+
+        printHeader();
 
         ArrayList packageList = new ArrayList(packages);
 
@@ -116,6 +197,10 @@ public class JDepend {
 
         printCycles(packageList);
 
+        if (rollupDepth > 0) {
+            printRollup(analyzer.getPackageRollup());
+        }
+
         printSummary(packageList);
 
         printFooter();
@@ -236,14 +321,50 @@ public class JDepend {
     protected void printCycles(Collection packages) {
         printCyclesHeader();
 
-        Iterator i = packages.iterator();
-        while (i.hasNext()) {
-            printCycle((JavaPackage) i.next());
+        if (cycleEnumerator != null) {
+            printElementaryCycles(packages);
+        } else {
+            Iterator i = packages.iterator();
+            while (i.hasNext()) {
+                printCycle((JavaPackage) i.next());
+            }
         }
 
         printCyclesFooter();
     }
 
+    protected void printElementaryCycles(Collection packages) {
+
+        cycleEnumerator.enumerate(packages, new CycleListener() {
+
+            public void onCycle(List cycle) {
+                Iterator i = cycle.iterator();
+                printCycleHeader((JavaPackage) i.next());
+                while (i.hasNext()) {
+                    printCycleContributor((JavaPackage) i.next());
+                }
+                printCycleTarget((JavaPackage) cycle.get(0));
+                printCycleFooter();
+            }
+        });
+
+        if (!cycleEnumerator.isComplete()) {
+            printCyclesIncomplete();
+        }
+    }
+
+    protected void printRollup(PackageRollup rollup) {
+        printRollupHeader();
+
+        for (int id = 0; id < rollup.size(); id++) {
+            if (rollup.getDepth(id) <= rollupDepth) {
+                printRollupPrefix(rollup, id);
+            }
+        }
+
+        printRollupFooter();
+    }
+
     protected void printCycle(JavaPackage jPackage) {
 
         List list = new ArrayList();
@@ -395,6 +516,11 @@ public class JDepend {
         // do nothing
     }
 
+    protected void printCyclesIncomplete() {
+        getWriter().println("Further cycles not reported.");
+        printSectionBreak();
+    }
+
     protected void printCycleHeader(JavaPackage jPackage) {
         getWriter().println(jPackage.getName());
         getWriter().println(tab() + "|");
@@ -412,6 +538,37 @@ public class JDepend {
         printSectionBreak();
     }
 
+    protected void printRollupHeader() {
+        getWriter().println(
+                "\n--------------------------------------------------");
+        getWriter().println("- Package Roll-up:");
+        getWriter().println(
+                "--------------------------------------------------\n");
+
+        getWriter().println(
+                "Name, Depth, Class Count, Abstract Class Count, " +
+                "Ca, Ce, A, I, D, Cycle:\n");
+    }
+
+    protected void printRollupFooter() {
+        // do nothing
+    }
+
+    protected void printRollupPrefix(PackageRollup rollup, int id) {
+        getWriter().print(rollup.getName(id) + ",");
+        getWriter().print(rollup.getDepth(id) + ",");
+        getWriter().print(rollup.getClassCounts()[id] + ",");
+        getWriter().print(rollup.getAbstractClassCounts()[id] + ",");
+        getWriter().print(rollup.getAfferentCouplings()[id] + ",");
+        getWriter().print(rollup.getEfferentCouplings()[id] + ",");
+        getWriter().print(
+                toFormattedString(rollup.getAbstractness()[id]) + ",");
+        getWriter().print(
+                toFormattedString(rollup.getInstability()[id]) + ",");
+        getWriter().print(toFormattedString(rollup.getDistances()[id]) + ",");
+        getWriter().println(rollup.getCycles()[id]);
+    }
+
     protected void printSummary(Collection packages) {
         getWriter().println(
                 "\n--------------------------------------------------");
@@ -468,6 +625,11 @@ public class JDepend {
         System.err.println("");
         System.err.println("usage: ");
         System.err.println(baseUsage + "[-components <components>]" +
+            " [-threads <threads>]" +
+            " [-cache <directory> [-clearcache]]" +
+            " [-cycles <length>[,<count>[,<seconds>]]]" +
+            " [-rollup <depth>]" +
+            " [-watch]" +
             " [-file <output file>] <directory> " + 
             "[directory2 [directory 3] ...]");
         System.exit(1);
@@ -480,6 +642,8 @@ public class JDepend {
         }
 
         int directoryCount = 0;
+        boolean clearCache = false;
+        boolean watch = false;
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].startsWith("-")) {
@@ -501,6 +665,42 @@ public class JDepend {
                         usage("Components not specified.");
                     }
                     setComponents(args[++i]);
+                } else if (args[i].equalsIgnoreCase("-threads")) {
+                    if (args.length <= i + 1) {
+                        usage("Number of threads not specified.");
+                    }
+                    try {
+                        setThreads(Integer.parseInt(args[++i]));
+                    } catch (IllegalArgumentException iae) {
+                        usage("Invalid number of threads: " + args[i]);
+                    }
+                } else if (args[i].equalsIgnoreCase("-cache")) {
+                    if (args.length <= i + 1) {
+                        usage("Cache directory not specified.");
+                    }
+                    setCacheDirectory(args[++i]);
+                } else if (args[i].equalsIgnoreCase("-cycles")) {
+                    if (args.length <= i + 1) {
+                        usage("Cycle limits not specified.");
+                    }
+                    try {
+                        setCycleEnumerator(parseCycleLimits(args[++i]));
+                    } catch (IllegalArgumentException iae) {
+                        usage("Invalid cycle limits: " + args[i]);
+                    }
+                } else if (args[i].equalsIgnoreCase("-rollup")) {
+                    if (args.length <= i + 1) {
+                        usage("Roll-up depth not specified.");
+                    }
+                    try {
+                        setRollupDepth(Integer.parseInt(args[++i]));
+                    } catch (IllegalArgumentException iae) {
+                        usage("Invalid roll-up depth: " + args[i]);
+                    }
+                } else if (args[i].equalsIgnoreCase("-clearcache")) {
+                    clearCache = true;
+                } else if (args[i].equalsIgnoreCase("-watch")) {
+                    watch = true;
                 } else {
                     usage("Invalid argument: " + args[i]);
                 }
@@ -518,7 +718,51 @@ public class JDepend {
             usage("Must specify at least one directory.");
         }
 
+        if (clearCache) {
+            if (analyzer.getParseCache() == null) {
+                usage("Cache directory not specified.");
+            }
+            clearCache();
+        }
+
         analyze();
+
+        if (watch) {
+            try {
+                watch();
+            } catch (IOException ioe) {
+                usage(ioe.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns an enumerator with the specified comma-separated maximum
+     * cycle length, number of cycles, and number of seconds, where
+     * <code>0</code> or an omitted value means no limit.
+     */
+    private CycleEnumerator parseCycleLimits(String limits) {
+
+        String[] values = limits.split(",", -1);
+        if (values.length > 3) {
+            throw new IllegalArgumentException(limits);
+        }
+
+        CycleEnumerator enumerator = new CycleEnumerator();
+        enumerator.setMaxLength(parseLimit(values[0]));
+        if (values.length > 1) {
+            enumerator.setMaxCycles(parseLimit(values[1]));
+        }
+        if (values.length > 2) {
+            enumerator.setTimeLimit(parseLimit(values[2]) * 1000L);
+        }
+
+        return enumerator;
+    }
+
+    private int parseLimit(String value) {
+        value = value.trim();
+        return value.length() == 0 ? 0 : Integer.parseInt(value);
     }
 
     public static void main(String args[]) {
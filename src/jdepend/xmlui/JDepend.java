@@ -7,6 +7,7 @@ import java.text.NumberFormat;
 
 import jdepend.framework.JavaClass;
 import jdepend.framework.JavaPackage;
+import jdepend.framework.PackageRollup;
 
 /**
  * The <code>JDepend</code> class analyzes directories of Java class files,
@@ -161,6 +162,10 @@ public class JDepend extends jdepend.textui.JDepend {
         getWriter().println(tab() + "</Cycles>");
     }
 
+    protected void printCyclesIncomplete() {
+        getWriter().println(tab(2) + "<!-- Further cycles not reported. -->");
+    }
+
     protected void printCycleHeader(JavaPackage jPackage) {
         getWriter().println(
                 tab(2) + "<Package Name=\"" + jPackage.getName() + "\">");
@@ -180,6 +185,46 @@ public class JDepend extends jdepend.textui.JDepend {
                 tab(3) + "<Package>" + jPackage.getName() + "</Package>");
     }
 
+    protected void printRollupHeader() {
+        printSectionBreak();
+        getWriter().println(tab() + "<Rollup>");
+    }
+
+    protected void printRollupFooter() {
+        getWriter().println(tab() + "</Rollup>");
+    }
+
+    protected void printRollupPrefix(PackageRollup rollup, int id) {
+        getWriter().println(
+                tab(2) + "<Prefix name=\"" + rollup.getName(id)
+                        + "\" depth=\"" + rollup.getDepth(id) + "\">");
+        getWriter().println(tab(3) + "<Stats>");
+        getWriter().println(
+                tab(4) + "<TotalClasses>" + rollup.getClassCounts()[id]
+                        + "</TotalClasses>");
+        getWriter().println(
+                tab(4) + "<AbstractClasses>"
+                        + rollup.getAbstractClassCounts()[id]
+                        + "</AbstractClasses>");
+        getWriter().println(
+                tab(4) + "<Ca>" + rollup.getAfferentCouplings()[id] + "</Ca>");
+        getWriter().println(
+                tab(4) + "<Ce>" + rollup.getEfferentCouplings()[id] + "</Ce>");
+        getWriter().println(
+                tab(4) + "<A>" + toFormattedString(rollup.getAbstractness()[id])
+                        + "</A>");
+        getWriter().println(
+                tab(4) + "<I>" + toFormattedString(rollup.getInstability()[id])
+                        + "</I>");
+        getWriter().println(
+                tab(4) + "<D>" + toFormattedString(rollup.getDistances()[id])
+                        + "</D>");
+        getWriter().println(
+                tab(4) + "<Cycle>" + rollup.getCycles()[id] + "</Cycle>");
+        getWriter().println(tab(3) + "</Stats>");
+        getWriter().println(tab(2) + "</Prefix>");
+    }
+
     protected void printSummary(Collection packages) {
         // do nothing
     }
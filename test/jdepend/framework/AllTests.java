@@ -15,14 +15,24 @@ public class AllTests {
         TestSuite suite = new TestSuite("JDepend Tests");
 
         suite.addTestSuite(ClassFileParserTest.class);
+        suite.addTestSuite(ByteBufferClassFileParserTest.class);
         suite.addTestSuite(ComponentTest.class);
         suite.addTestSuite(JarFileParserTest.class);
+        suite.addTestSuite(JavaClassBuilderTest.class);
+        suite.addTestSuite(JarSummaryStoreTest.class);
         suite.addTestSuite(ConstraintTest.class);
         suite.addTestSuite(CycleTest.class);
         suite.addTestSuite(CollectAllCyclesTest.class);
+        suite.addTestSuite(CycleEnumeratorTest.class);
+        suite.addTestSuite(DependencyRulesTest.class);
         suite.addTestSuite(FileManagerTest.class);
         suite.addTestSuite(FilterTest.class);
         suite.addTestSuite(MetricTest.class);
+        suite.addTestSuite(PackageGraphTest.class);
+        suite.addTestSuite(PackageRollupTest.class);
+        suite.addTestSuite(ParseCacheTest.class);
+        suite.addTestSuite(ReachabilityIndexTest.class);
+        suite.addTestSuite(UpdateTest.class);
         suite.addTestSuite(PropertyConfiguratorTest.class);
         suite.addTestSuite(ExampleTest.class);
 
@@ -0,0 +1,379 @@
+package jdepend.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Verifies that the <code>ByteBufferClassFileParser</code> produces the
+ * same <code>JavaClass</code> instances as the <code>ClassFileParser</code>.
+ */
+
+public class ByteBufferClassFileParserTest extends JDependTestCase {
+
+    private ByteBufferClassFileParser parser;
+    private ClassFileParser referenceParser;
+
+    public ByteBufferClassFileParserTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        super.setUp();
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        parser = new ByteBufferClassFileParser(filter);
+        referenceParser = new ClassFileParser(filter);
+    }
+
+    protected void tearDown() {
+        super.tearDown();
+    }
+
+    public void testInvalidClassFile() {
+
+        File f = new File(getTestDir() + getPackageSubDir() +
+                          "ExampleTest.java");
+
+        try {
+
+            parser.parse(f);
+            fail("Invalid class file: Should raise IOException");
+
+        } catch (IOException expected) {
+            assertTrue(true);
+        }
+    }
+
+    public void testTruncatedClassFile() throws IOException {
+
+        File f = new File(getBuildDir() + getPackageSubDir() +
+                          "ExampleConcreteClass.class");
+
+        ByteBuffer buffer = read(f);
+        buffer.limit(buffer.limit() / 2);
+
+        try {
+
+            parser.parse(buffer);
+            fail("Truncated class file: Should raise IOException");
+
+        } catch (IOException expected) {
+            assertTrue(true);
+        }
+    }
+
+    public void testInvalidClassFileSource() throws IOException {
+
+        File invalid = new File(getTestDir() + getPackageSubDir() +
+                                "ExampleTest.java");
+        try {
+            parser.parse(invalid);
+            fail("Invalid class file: Should raise IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().endsWith(invalid.getPath()));
+        }
+
+        File f = new File(getBuildDir() + getPackageSubDir() +
+                          "ExampleConcreteClass.class");
+        ByteBuffer buffer = read(f);
+        buffer.limit(buffer.limit() / 2);
+        byte[] truncated = new byte[buffer.remaining()];
+        buffer.duplicate().get(truncated);
+
+        try {
+            parser.parse(new ByteArrayInputStream(truncated), "truncated");
+            fail("Truncated class file: Should raise IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().endsWith("truncated"));
+        }
+
+        try {
+            parser.parse(buffer);
+            fail("Truncated class file: Should raise IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().endsWith("byte buffer"));
+        }
+    }
+
+    public void testConcreteClass() throws IOException {
+
+        File f = new File(getBuildDir() + getPackageSubDir() +
+                          "ExampleConcreteClass.class");
+
+        JavaClass clazz = parser.parse(f);
+
+        assertFalse(clazz.isAbstract());
+        assertEquals("jdepend.framework.ExampleConcreteClass", clazz.getName());
+        assertEquals("jdepend.framework", clazz.getPackageName());
+        assertEquals("ExampleConcreteClass.java", clazz.getSourceFile());
+        assertEquals(19, clazz.getImportedPackages().size());
+        assertTrue(clazz.getImportedPackages().contains(
+            new JavaPackage("java.awt.dnd.peer")));
+    }
+
+    public void testBufferPosition() throws IOException {
+
+        File f = new File(getBuildDir() + getPackageSubDir() +
+                          "ExampleInterface.class");
+
+        ByteBuffer contents = read(f);
+        ByteBuffer buffer = ByteBuffer.allocate(contents.remaining() + 3);
+        buffer.position(3);
+        buffer.put(contents);
+        buffer.position(3);
+
+        JavaClass clazz = parser.parse(buffer);
+
+        assertEquals("jdepend.framework.ExampleInterface", clazz.getName());
+        assertEquals(3, buffer.position());
+    }
+
+    public void testExampleClassFiles() throws IOException {
+        assertSameClass(ClassFileParser.class.getResource(
+            "/data/example_class1.bin").getFile());
+        assertSameClass(ClassFileParser.class.getResource(
+            "/data/example_class2.bin").getFile());
+    }
+
+    public void testBuildDirectory() throws IOException {
+
+        FileManager fm = new FileManager();
+        fm.addDirectory(getBuildDir());
+
+        Collection files = fm.extractFiles();
+        assertTrue(files.size() > 0);
+
+        for (Iterator i = files.iterator(); i.hasNext();) {
+            File f = (File) i.next();
+            if (fm.acceptClassFile(f)) {
+                assertSameClass(f.getPath());
+            }
+        }
+    }
+
+    public void testJarFile() throws IOException {
+
+        File jarFile = new File(getTestDataDir() + "test.jar");
+
+        Collection expected = new JavaClassBuilder(referenceParser,
+            new FileManager()).buildClasses(jarFile);
+        Collection actual = new JavaClassBuilder(parser,
+            new FileManager()).buildClasses(jarFile);
+
+        assertEquals(expected.size(), actual.size());
+
+        Iterator e = expected.iterator();
+        Iterator a = actual.iterator();
+        while (e.hasNext()) {
+            assertSameClass((JavaClass) e.next(), (JavaClass) a.next());
+        }
+    }
+
+    public void testPackageNamesAreShared() throws IOException {
+
+        JavaClass concrete = parser.parse(new File(getBuildDir() +
+            getPackageSubDir() + "ExampleConcreteClass.class"));
+        JavaClass abstractClass = parser.parse(new File(getBuildDir() +
+            getPackageSubDir() + "ExampleAbstractClass.class"));
+
+        assertEquals("jdepend.framework", concrete.getPackageName());
+        assertSame(concrete.getPackageName(), abstractClass.getPackageName());
+    }
+
+    public void testImportedPackagesAreCanonical() throws IOException {
+
+        PackageRegistry registry = new PackageRegistry();
+        parser.setPackageRegistry(registry);
+        referenceParser.setPackageRegistry(registry);
+
+        JavaClass concrete = parser.parse(new File(getBuildDir() +
+            getPackageSubDir() + "ExampleConcreteClass.class"));
+        JavaClass reference = referenceParser.parse(new File(getBuildDir() +
+            getPackageSubDir() + "ExampleConcreteClass.class"));
+
+        for (Iterator i = concrete.getImportedPackages().iterator();
+                i.hasNext();) {
+            JavaPackage imported = (JavaPackage) i.next();
+            assertSame(imported, registry.getPackage(imported.getName()));
+        }
+        for (Iterator i = reference.getImportedPackages().iterator();
+                i.hasNext();) {
+            JavaPackage imported = (JavaPackage) i.next();
+            assertSame(imported, registry.getPackage(imported.getName()));
+        }
+        assertEquals(20, registry.size());
+    }
+
+    public void testConcurrentParsing() throws Exception {
+
+        FileManager fm = new FileManager();
+        fm.addDirectory(getBuildDir());
+
+        final List files = new ArrayList();
+        for (Iterator i = fm.extractFiles().iterator(); i.hasNext();) {
+            File f = (File) i.next();
+            if (fm.acceptClassFile(f)) {
+                files.add(f);
+            }
+        }
+
+        final List parsed = Collections.synchronizedList(new ArrayList());
+        parser.addParseListener(new ParserListener() {
+
+            public void onParsedJavaClass(JavaClass parsedClass) {
+                parsed.add(parsedClass);
+            }
+        });
+
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+
+                public void run() {
+                    try {
+                        for (Iterator i = files.iterator(); i.hasNext();) {
+                            File f = (File) i.next();
+                            assertSameClass(referenceParser.parse(f),
+                                parser.parse(f));
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+
+        if (failure[0] != null) {
+            fail(failure[0].toString());
+        }
+        assertEquals(files.size() * threads.length, parsed.size());
+    }
+
+    public void testFastDependencyScan() throws IOException {
+
+        File f = new File(getBuildDir() + getPackageSubDir() +
+                          "ExampleConcreteClass.class");
+
+        parser.useFastDependencyScan(true);
+        JavaClass clazz = parser.parse(f);
+
+        assertFalse(clazz.isAbstract());
+        assertEquals("jdepend.framework.ExampleConcreteClass", clazz.getName());
+        assertEquals("Unknown", clazz.getSourceFile());
+
+        Collection imports = clazz.getImportedPackages();
+        assertTrue(imports.contains(new JavaPackage("java.lang")));
+        assertTrue(imports.contains(new JavaPackage("java.util.jar")));
+        assertFalse(imports.contains(new JavaPackage("javax.crypto")));
+    }
+
+    public void testFastDependencyScanStopsReading() throws IOException {
+
+        File f = new File(getBuildDir() + getPackageSubDir() +
+                          "ByteBufferClassFileParser.class");
+
+        final int[] count = new int[1];
+        InputStream is = new FileInputStream(f) {
+
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, Math.min(len, 64));
+                count[0] += Math.max(n, 0);
+                return n;
+            }
+        };
+
+        parser.useFastDependencyScan(true);
+        try {
+            JavaClass clazz = parser.parse(is);
+            assertEquals("jdepend.framework.ByteBufferClassFileParser",
+                clazz.getName());
+        } finally {
+            is.close();
+        }
+
+        assertTrue(count[0] < f.length());
+    }
+
+    public void testFastDependencyScanFindsClassReferences()
+            throws IOException {
+
+        FileManager fm = new FileManager();
+        fm.addDirectory(getBuildDir());
+
+        ByteBufferClassFileParser fastParser = new ByteBufferClassFileParser(
+            new PackageFilter(new ArrayList()));
+        fastParser.useFastDependencyScan(true);
+
+        for (Iterator i = fm.extractFiles().iterator(); i.hasNext();) {
+            File f = (File) i.next();
+            if (fm.acceptClassFile(f)) {
+                JavaClass full = parser.parse(f);
+                JavaClass fast = fastParser.parse(f);
+                assertEquals(full.getName(), fast.getName());
+                assertEquals(full.isAbstract(), fast.isAbstract());
+
+                InputStream is = new FileInputStream(f);
+                try {
+                    assertEquals(fast.getImportedPackages().size(),
+                        fastParser.parse(is).getImportedPackages().size());
+                } finally {
+                    is.close();
+                }
+            }
+        }
+    }
+
+    private void assertSameClass(String fileName) throws IOException {
+
+        File f = new File(fileName);
+
+        JavaClass expected = referenceParser.parse(f);
+        assertSameClass(expected, parser.parse(f));
+
+        InputStream is = new FileInputStream(f);
+        try {
+            assertSameClass(expected, parser.parse(is));
+        } finally {
+            is.close();
+        }
+    }
+
+    private void assertSameClass(JavaClass expected, JavaClass actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getPackageName(), actual.getPackageName());
+        assertEquals(expected.getSourceFile(), actual.getSourceFile());
+        assertEquals(expected.isAbstract(), actual.isAbstract());
+        assertEquals(expected.getName(),
+            expected.getImportedPackages().size(),
+            actual.getImportedPackages().size());
+        assertTrue(expected.getName(), actual.getImportedPackages()
+            .containsAll(expected.getImportedPackages()));
+    }
+
+    private ByteBuffer read(File f) throws IOException {
+        byte[] b = new byte[(int) f.length()];
+        InputStream is = new FileInputStream(f);
+        try {
+            int offset = 0;
+            while (offset < b.length) {
+                offset += is.read(b, offset, b.length - offset);
+            }
+        } finally {
+            is.close();
+        }
+        return ByteBuffer.wrap(b);
+    }
+}
@@ -50,16 +50,36 @@ public class ComponentTest extends JDependTestCase {
         assertJavaxPackage();
     }
 
+    public void testLongestComponent() {
+
+        jdepend.setComponents("com.acme,com.acme.web,org");
+
+        assertEquals("com.acme.web",
+            jdepend.addPackage("com.acme.web.view").getName());
+        assertEquals("com.acme.web",
+            jdepend.addPackage("com.acme.web").getName());
+        assertEquals("com.acme",
+            jdepend.addPackage("com.acme.webapp").getName());
+        assertEquals("com.acme",
+            jdepend.addPackage("com.acme.core.util").getName());
+        assertEquals("com.acmex", jdepend.addPackage("com.acmex").getName());
+        assertEquals("com", jdepend.addPackage("com").getName());
+        assertEquals("org", jdepend.addPackage("org.acme").getName());
+        assertEquals("net.acme", jdepend.addPackage("net.acme").getName());
+
+        assertEquals(6, jdepend.getPackages().size());
+    }
+
     private void assertJDependPackage() {
         JavaPackage p = jdepend.getPackage("jdepend");
         assertEquals("jdepend", p.getName());
-        assertEquals(40, p.getConcreteClassCount());
-        assertEquals(8, p.getAbstractClassCount());
+        assertEquals(68, p.getConcreteClassCount());
+        assertEquals(10, p.getAbstractClassCount());
         assertEquals(0, p.afferentCoupling());
         assertEquals(5, p.efferentCoupling());
-        assertEquals(format(0.17f), format(p.abstractness()));
+        assertEquals(format(0.13f), format(p.abstractness()));
         assertEquals("1", format(p.instability()));
-        assertEquals(format(0.17f), format(p.distance()));
+        assertEquals(format(0.13f), format(p.distance()));
         assertEquals(1, p.getVolatility());
         
         Collection efferents = p.getEfferents();
@@ -0,0 +1,129 @@
+package jdepend.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Verifies that a <code>CycleEnumerator</code> reports each elementary
+ * package dependency cycle once, shortest first, within its limits.
+ */
+
+public class CycleEnumeratorTest extends JDependTestCase {
+
+    public CycleEnumeratorTest(String name) {
+        super(name);
+    }
+
+    public void testNoCycles() {
+
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        a.dependsUpon(b);
+
+        CycleEnumerator enumerator = new CycleEnumerator();
+        List cycles = enumerate(enumerator, Arrays.asList(
+            new JavaPackage[] { a, b }));
+
+        assertEquals(0, cycles.size());
+        assertTrue(enumerator.isComplete());
+    }
+
+    public void testElementaryCycles() {
+
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        JavaPackage c = new JavaPackage("C");
+        JavaPackage d = new JavaPackage("D");
+        JavaPackage e = new JavaPackage("E");
+
+        a.dependsUpon(b);
+        b.dependsUpon(c);
+        c.dependsUpon(a);
+
+        a.dependsUpon(d);
+        d.dependsUpon(e);
+        e.dependsUpon(a);
+
+        c.dependsUpon(b);
+
+        CycleEnumerator enumerator = new CycleEnumerator();
+        List cycles = enumerate(enumerator, Arrays.asList(
+            new JavaPackage[] { e }));
+
+        assertEquals(Arrays.asList(new String[] {
+            "B C", "A B C", "A D E" }), cycles);
+        assertTrue(enumerator.isComplete());
+
+        enumerator.setMaxLength(2);
+        cycles = enumerate(enumerator, Arrays.asList(
+            new JavaPackage[] { e }));
+
+        assertEquals(Arrays.asList(new String[] { "B C" }), cycles);
+        assertTrue(enumerator.isComplete());
+    }
+
+    public void testCompleteGraph() {
+
+        CycleEnumerator enumerator = new CycleEnumerator();
+        List cycles = enumerate(enumerator, completeGraph(4));
+
+        assertEquals(6 + 8 + 6, cycles.size());
+        assertEquals("P0 P1", cycles.get(0));
+        assertEquals("P0 P3 P2 P1", cycles.get(cycles.size() - 1));
+        assertTrue(enumerator.isComplete());
+    }
+
+    public void testMaxCycles() {
+
+        CycleEnumerator enumerator = new CycleEnumerator();
+        enumerator.setMaxCycles(1000);
+        enumerator.setTimeLimit(60000);
+        List cycles = enumerate(enumerator, completeGraph(40));
+
+        assertEquals(1000, cycles.size());
+        assertFalse(enumerator.isComplete());
+
+        String[] last = ((String) cycles.get(cycles.size() - 1)).split(" ");
+        assertEquals(3, last.length);
+    }
+
+    private List completeGraph(int size) {
+
+        List packages = new ArrayList();
+        for (int i = 0; i < size; i++) {
+            packages.add(new JavaPackage("P" + i));
+        }
+
+        for (Iterator i = packages.iterator(); i.hasNext();) {
+            JavaPackage p = (JavaPackage) i.next();
+            for (Iterator j = packages.iterator(); j.hasNext();) {
+                p.dependsUpon((JavaPackage) j.next());
+            }
+        }
+
+        return packages;
+    }
+
+    private List enumerate(CycleEnumerator enumerator, List packages) {
+
+        final List cycles = new ArrayList();
+        int count = enumerator.enumerate(packages, new CycleListener() {
+
+            public void onCycle(List cycle) {
+                StringBuffer names = new StringBuffer();
+                for (Iterator i = cycle.iterator(); i.hasNext();) {
+                    names.append(((JavaPackage) i.next()).getName());
+                    if (i.hasNext()) {
+                        names.append(" ");
+                    }
+                }
+                cycles.add(names.toString());
+            }
+        });
+
+        assertEquals(cycles.size(), count);
+        return cycles;
+    }
+}
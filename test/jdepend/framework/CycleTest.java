@@ -174,6 +174,81 @@ public class CycleTest extends JDependTestCase {
         assertListEquals(eCycles, new String[] { "E", "A", "B", "C", "A"});
     }
 
+    public void testChangedDependencies() {
+
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        JavaPackage c = new JavaPackage("C");
+
+        a.dependsUpon(b);
+        b.dependsUpon(c);
+        assertEquals(false, a.containsCycle());
+
+        c.dependsUpon(b);
+        assertEquals(true, a.containsCycle());
+        assertEquals(true, c.containsCycle());
+
+        c.removeEfferent(b);
+        assertEquals(false, a.containsCycle());
+        assertEquals(false, c.containsCycle());
+    }
+
+    public void testMergedGroups() {
+
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        JavaPackage c = new JavaPackage("C");
+        JavaPackage d = new JavaPackage("D");
+
+        a.dependsUpon(b);
+        c.dependsUpon(d);
+        d.dependsUpon(c);
+        assertEquals(false, a.containsCycle());
+        assertEquals(true, c.containsCycle());
+
+        b.dependsUpon(c);
+        assertEquals(true, a.containsCycle());
+        assertEquals(true, b.containsCycle());
+
+        d.removeEfferent(c);
+        assertEquals(false, a.containsCycle());
+        assertEquals(false, c.containsCycle());
+
+        try {
+            a.getEfferents().clear();
+            fail("Should raise UnsupportedOperationException");
+        } catch (UnsupportedOperationException success) {
+        }
+    }
+
+    public void testLongChain() {
+
+        JavaPackage[] packages = new JavaPackage[100000];
+        for (int i = 0; i < packages.length; i++) {
+            packages[i] = new JavaPackage("P" + i);
+            if (i > 0) {
+                packages[i - 1].dependsUpon(packages[i]);
+            }
+        }
+
+        assertEquals(false, packages[0].containsCycle());
+        assertEquals(false, packages[0].collectCycle(new ArrayList()));
+
+        packages[packages.length - 1].dependsUpon(
+            packages[packages.length - 2]);
+
+        List cycle = new ArrayList();
+        assertEquals(true, packages[0].containsCycle());
+        assertEquals(true, packages[0].collectCycle(cycle));
+        assertEquals(packages.length + 1, cycle.size());
+        assertEquals(packages[packages.length - 2],
+            cycle.get(cycle.size() - 1));
+
+        List allCycles = new ArrayList();
+        assertEquals(true, packages[0].collectAllCycles(allCycles));
+        assertEquals(cycle, allCycles);
+    }
+
     protected void assertListEquals(List list, String names[]) {
 
         assertEquals(names.length, list.size());
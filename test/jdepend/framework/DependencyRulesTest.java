@@ -0,0 +1,278 @@
+package jdepend.framework;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Verifies that <code>DependencyRules</code> reports each dependency
+ * violating its rules, with the rule it violates.
+ */
+
+public class DependencyRulesTest extends JDependTestCase {
+
+    private JDepend jdepend;
+
+    public DependencyRulesTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        super.setUp();
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        filter.addPackage("java.*");
+        filter.addPackage("javax.*");
+        jdepend = new JDepend(filter);
+    }
+
+    public void testForbid() {
+
+        JavaPackage web = jdepend.addPackage("com.xyz.web");
+        JavaPackage service = jdepend.addPackage("com.xyz.service");
+        JavaPackage persistence = jdepend.addPackage("com.xyz.persistence");
+        web.dependsUpon(service);
+        web.dependsUpon(persistence);
+        service.dependsUpon(persistence);
+
+        DependencyRules rules = new DependencyRules();
+        DependencyRule rule = rules.forbid("com.xyz.web", "com.xyz.p*");
+
+        List violations = jdepend.checkRules(rules);
+        assertEquals(1, violations.size());
+        DependencyViolation violation = (DependencyViolation)violations.get(0);
+        assertSame(web, violation.getFrom());
+        assertSame(persistence, violation.getTo());
+        assertSame(rule, violation.getRule());
+        assertEquals("com.xyz.web -> com.xyz.persistence " +
+            "(forbid com.xyz.web -> com.xyz.p*)", violation.toString());
+    }
+
+    public void testAllow() {
+
+        DependencyRules rules = new DependencyRules();
+        DependencyRule webRule = rules.only("com.xyz.web.**",
+            "com.xyz.service.**");
+        DependencyRule persistenceRule = rules.forbid("**",
+            "com.xyz.persistence.**");
+        rules.allow("com.xyz.service.**", "com.xyz.persistence.**");
+
+        assertNull(rules.getViolatedRule("com.xyz.web", "com.xyz.service"));
+        assertNull(rules.getViolatedRule("com.xyz.web.view",
+            "com.xyz.service.api"));
+        assertSame(webRule, rules.getViolatedRule("com.xyz.web.view",
+            "com.xyz.util"));
+        assertSame(persistenceRule, rules.getViolatedRule("com.xyz.web",
+            "com.xyz.persistence"));
+        assertSame(persistenceRule, rules.getViolatedRule("com.xyz.batch",
+            "com.xyz.persistence.jdbc"));
+        assertNull(rules.getViolatedRule("com.xyz.service.impl",
+            "com.xyz.persistence"));
+        assertNull(rules.getViolatedRule("com.xyz.batch", "com.xyz.util"));
+        assertNull(rules.getViolatedRule("com.xyz.service", "java.util"));
+    }
+
+    public void testDocumentedExample() {
+
+        DependencyRules rules = new DependencyRules();
+        DependencyRule webRule = rules.only("com.xyz.web.**",
+            "com.xyz.service.**");
+        rules.only("com.xyz.web.**", "java.**");
+        DependencyRule persistenceRule = rules.forbid("**",
+            "com.xyz.persistence.**");
+        rules.allow("com.xyz.service.**", "com.xyz.persistence.**");
+
+        assertNull(rules.getViolatedRule("com.xyz.web", "com.xyz.service"));
+        assertNull(rules.getViolatedRule("com.xyz.web.view", "java.util"));
+        assertSame(webRule, rules.getViolatedRule("com.xyz.web",
+            "com.xyz.util"));
+        assertSame(persistenceRule, rules.getViolatedRule("com.xyz.web",
+            "com.xyz.persistence"));
+        assertSame(persistenceRule, rules.getViolatedRule("com.xyz.batch",
+            "com.xyz.persistence"));
+        assertNull(rules.getViolatedRule("com.xyz.service",
+            "com.xyz.persistence.jdbc"));
+        assertNull(rules.getViolatedRule("com.xyz.service", "java.util"));
+        assertNull(rules.getViolatedRule("com.xyz.service", "com.xyz.util"));
+        assertEquals("only com.xyz.web.** -> com.xyz.service.**",
+            webRule.toString());
+    }
+
+    public void testPatterns() {
+
+        DependencyRules rules = new DependencyRules();
+        rules.forbid("**", "com.xyz.*.internal");
+        rules.forbid("com.xyz.*Test*", "**");
+
+        assertNotNull(rules.getViolatedRule("org.abc",
+            "com.xyz.web.internal"));
+        assertNull(rules.getViolatedRule("org.abc",
+            "com.xyz.web.internal.util"));
+        assertNull(rules.getViolatedRule("org.abc", "com.xyz.internal"));
+        assertNotNull(rules.getViolatedRule("com.xyz.WebTests", "org.abc"));
+        assertNull(rules.getViolatedRule("com.xyz.web", "org.abc"));
+
+        rules.allow("com.xyz.web.**", "com.xyz.web.internal");
+        assertNull(rules.getViolatedRule("com.xyz.web.view",
+            "com.xyz.web.internal"));
+    }
+
+    public void testManyRules() {
+
+        int count = 3000;
+        JavaPackage[] packages = new JavaPackage[count];
+        DependencyRules rules = new DependencyRules();
+        for (int i = 0; i < count; i++) {
+            packages[i] = jdepend.addPackage("p" + i);
+            rules.forbid("p" + i, "p" + ((i + 2) % count));
+        }
+        for (int i = 0; i < count; i++) {
+            packages[i].dependsUpon(packages[(i + 1) % count]);
+            if (i % 2 == 0) {
+                packages[i].dependsUpon(packages[(i + 2) % count]);
+            }
+        }
+
+        List violations = jdepend.checkRules(rules);
+        assertEquals(count / 2, violations.size());
+        for (int i = 0; i < violations.size(); i++) {
+            DependencyViolation violation =
+                (DependencyViolation)violations.get(i);
+            int from = Integer.parseInt(
+                violation.getFrom().getName().substring(1));
+            assertEquals(0, from % 2);
+            assertSame(packages[(from + 2) % count], violation.getTo());
+        }
+    }
+
+    public void testAnalyzedPackages() throws IOException {
+
+        jdepend.addDirectory(getBuildDir());
+        Collection packages = jdepend.analyze();
+
+        DependencyRules rules = new DependencyRules();
+        rules.forbid("jdepend.framework", "jdepend.*ui");
+        assertEquals(0, jdepend.checkRules(rules).size());
+
+        rules.forbid("jdepend.xmlui", "jdepend.**");
+        List violations = jdepend.checkRules(rules);
+        assertEquals(2, violations.size());
+        assertEquals(violations.size(), rules.check(packages).size());
+    }
+
+    public void testFailFast() throws IOException {
+
+        jdepend.addDirectory(getBuildDir());
+        int classCount = countClasses(jdepend.analyze());
+        assertEquals(0, jdepend.getViolations().size());
+
+        DependencyRules rules = new DependencyRules();
+        DependencyRule rule = rules.forbid("jdepend.framework", "junit.**");
+        jdepend.setFailFast(rules, 1);
+        int checkedClassCount = countClasses(jdepend.analyze());
+
+        List violations = jdepend.getViolations();
+        assertEquals(1, violations.size());
+        DependencyViolation violation = (DependencyViolation)violations.get(0);
+        assertEquals("jdepend.framework", violation.getFrom().getName());
+        assertTrue(violation.getTo().getName().startsWith("junit."));
+        assertSame(rule, violation.getRule());
+        assertEquals("jdepend.framework",
+            violation.getJavaClass().getPackageName());
+        assertTrue(checkedClassCount < classCount);
+
+        jdepend.setFailFast(rules, 0);
+        assertEquals(classCount, countClasses(jdepend.analyze()));
+        assertTrue(jdepend.getViolations().size() > 1);
+
+        jdepend.setFailFast((DependencyRules)null, 0);
+        jdepend.analyze();
+        assertEquals(0, jdepend.getViolations().size());
+    }
+
+    public void testFailFastThreads() throws IOException {
+
+        DependencyProscription proscription = new DependencyProscription();
+        JavaPackage framework = proscription.addPackage("jdepend.framework");
+        framework.dependsUpon(proscription.addPackage("junit.framework"));
+
+        jdepend.addDirectory(getBuildDir());
+        jdepend.setThreads(4);
+        int classCount = countClasses(jdepend.analyze());
+        jdepend.setFailFast(proscription, 3);
+        Collection packages = jdepend.analyze();
+        assertTrue(countClasses(packages) < classCount);
+        for (Iterator i = packages.iterator(); i.hasNext();) {
+            JavaPackage jPackage = (JavaPackage)i.next();
+            for (Iterator j = jPackage.getEfferents().iterator();
+                    j.hasNext();) {
+                JavaPackage efferent = (JavaPackage)j.next();
+                assertTrue(efferent.getAfferents().contains(jPackage));
+            }
+        }
+
+        List violations = jdepend.getViolations();
+        assertEquals(3, violations.size());
+        for (int i = 0; i < violations.size(); i++) {
+            DependencyViolation violation =
+                (DependencyViolation)violations.get(i);
+            assertEquals("jdepend.framework", violation.getFrom().getName());
+            assertEquals("junit.framework", violation.getTo().getName());
+            assertTrue(violation.getJavaClass().getImportedPackages()
+                .contains(violation.getTo()));
+        }
+    }
+
+    private int countClasses(Collection packages) {
+        int count = 0;
+        for (Iterator i = packages.iterator(); i.hasNext();) {
+            count += ((JavaPackage)i.next()).getClassCount();
+        }
+        return count;
+    }
+
+    public void testProscription() {
+
+        DependencyProscription proscription = new DependencyProscription();
+        JavaPackage forbiddenA = proscription.addPackage("A");
+        JavaPackage forbiddenB = proscription.addPackage("B");
+        forbiddenA.dependsUpon(forbiddenB);
+
+        JavaPackage actualA = jdepend.addPackage("A");
+        JavaPackage actualB = jdepend.addPackage("B");
+        JavaPackage actualC = jdepend.addPackage("C");
+        actualB.dependsUpon(actualA);
+        actualC.dependsUpon(actualB);
+        assertTrue(jdepend.followsDirective(proscription));
+
+        actualA.dependsUpon(actualB);
+        assertFalse(jdepend.followsDirective(proscription));
+
+        List violations = proscription.getViolations(jdepend.getPackages());
+        assertEquals(1, violations.size());
+        DependencyViolation violation = (DependencyViolation)violations.get(0);
+        assertSame(actualA, violation.getFrom());
+        assertSame(actualB, violation.getTo());
+    }
+
+    public void testPrescription() {
+
+        DependencyPrescription prescription = new DependencyPrescription();
+        JavaPackage expectedA = prescription.addPackage("A");
+        JavaPackage expectedB = prescription.addPackage("B");
+        prescription.addPackage("C");
+        expectedA.dependsUpon(expectedB);
+
+        JavaPackage actualA = jdepend.addPackage("A");
+        JavaPackage actualB = jdepend.addPackage("B");
+        actualA.dependsUpon(actualB);
+        assertFalse(jdepend.followsDirective(prescription));
+
+        jdepend.addPackage("C");
+        assertTrue(jdepend.followsDirective(prescription));
+
+        jdepend.addPackage("D");
+        assertFalse(jdepend.followsDirective(prescription));
+    }
+}
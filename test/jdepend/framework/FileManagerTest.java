@@ -2,6 +2,12 @@ package jdepend.framework;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
 
 /**
  * @author <b>Mike Clark</b>
@@ -32,7 +38,138 @@ public class FileManagerTest extends JDependTestCase {
 
     public void testBuildDirectory() throws IOException {
         fileManager.addDirectory(getBuildDir());
-        assertEquals(50, fileManager.extractFiles().size());
+        assertEquals(80, fileManager.extractFiles().size());
+    }
+
+    public void testIterateFiles() throws IOException {
+        fileManager.addDirectory(getTestDataDir());
+        fileManager.addDirectory(getBuildDir());
+        fileManager.addDirectory(getBuildDir() + getPackageSubDir());
+
+        List actual = new ArrayList();
+        for (Iterator i = fileManager.iterateFiles(); i.hasNext();) {
+            actual.add(i.next());
+        }
+
+        List expected = new ArrayList(new TreeSet(actual));
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+    }
+
+    public void testParallelWalk() throws IOException {
+        fileManager.addDirectory(getBuildDir());
+        fileManager.addDirectory(getTestDataDir());
+
+        List expected = new ArrayList(fileManager.extractFiles());
+
+        fileManager.setThreads(4);
+        assertEquals(expected, new ArrayList(fileManager.extractFiles()));
+
+        fileManager.sortFiles(false);
+        assertEquals(new TreeSet(expected), 
+            new TreeSet(fileManager.extractFiles()));
+    }
+
+    public void testAbandonedWalk() throws IOException {
+        fileManager.addDirectory(getBuildDir());
+        fileManager.setThreads(4);
+
+        Iterator files = fileManager.iterateFiles();
+        assertTrue(files.hasNext());
+        files.next();
+        DirectoryWalker.close(files);
+        assertFalse(files.hasNext());
+    }
+
+    public void testSymbolicLinkLoop() throws IOException {
+
+        File root = File.createTempFile("jdepend", "");
+        root.delete();
+        File sub = new File(root, "sub");
+        sub.mkdirs();
+        new File(sub, "A.class").createNewFile();
+
+        try {
+            Files.createSymbolicLink(new File(sub, "loop").toPath(),
+                root.toPath());
+        } catch (UnsupportedOperationException e) {
+            return;
+        } catch (IOException e) {
+            return;
+        }
+
+        try {
+            fileManager.addDirectory(root.getPath());
+            assertEquals(1, fileManager.extractFiles().size());
+        } finally {
+            new File(sub, "loop").delete();
+            new File(sub, "A.class").delete();
+            sub.delete();
+            root.delete();
+        }
+    }
+
+    public void testFilteredDirectory() throws IOException {
+
+        fileManager.addDirectory(getBuildDir());
+        int all = fileManager.extractFiles().size();
+
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        filter.addPackage("jdepend.swingui");
+        fileManager.setFilter(filter);
+        assertEquals(all, fileManager.extractFiles().size());
+
+        fileManager.filterByPath(true);
+        Collection files = fileManager.extractFiles();
+        assertTrue(files.size() > 0);
+        assertTrue(files.size() < all);
+        for (Iterator i = files.iterator(); i.hasNext();) {
+            File f = (File) i.next();
+            assertTrue(f.getPath().indexOf("swingui") < 0);
+        }
+
+        fileManager.filterByPath(false);
+        assertEquals(all, fileManager.extractFiles().size());
+    }
+
+    public void testFilteredJarEntries() {
+
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        filter.addPackage("jdepend.framework");
+        fileManager.setFilter(filter);
+        fileManager.filterByPath(true);
+
+        assertTrue(fileManager.acceptClassFileName("jdepend/textui/A.class"));
+        assertFalse(fileManager.acceptClassFileName(
+            "jdepend/framework/A.class"));
+        assertFalse(fileManager.acceptClassFileName(
+            "WEB-INF/classes/jdepend/framework/A.class"));
+        assertFalse(fileManager.acceptClassFileName(
+            "META-INF/versions/9/jdepend/framework/A.class"));
+        assertTrue(fileManager.acceptClassFileName(
+            "BOOT-INF/classes/A.class"));
+
+        fileManager.filterByPath(false);
+        assertTrue(fileManager.acceptClassFileName(
+            "jdepend/framework/A.class"));
+    }
+
+    public void testCountClasses() throws IOException {
+
+        fileManager.addDirectory(getBuildDir());
+        JavaClassBuilder builder = new JavaClassBuilder(fileManager);
+
+        int classes = builder.build().size();
+        assertEquals(classes, fileManager.countClasses());
+
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        fileManager.setFilter(filter);
+        fileManager.filterByPath(true);
+        assertEquals(classes, fileManager.countClasses());
+
+        filter.addPackage("jdepend.swingui");
+        assertTrue(fileManager.countClasses() < classes);
+        assertEquals(builder.build().size(), fileManager.countClasses());
     }
 
     public void testNonExistentDirectory() {
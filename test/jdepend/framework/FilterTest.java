@@ -61,6 +61,95 @@ public class FilterTest extends JDependTestCase {
         assertEquals(1, filter.getFilters().size());
     }
 
+    public void testPrefix() {
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        filter.addPackage("java");
+        filter.addPackage("com.xyz.te*");
+
+        assertFalse(filter.accept("java"));
+        assertFalse(filter.accept("javax.swing"));
+        assertFalse(filter.accept("com.xyz.tests"));
+        assertFalse(filter.accept("com.xyz.te.a"));
+        assertTrue(filter.accept("com.xyz"));
+        assertTrue(filter.accept("com.xyz.ejb"));
+        assertTrue(filter.acceptSubpackages("com.xyz"));
+        assertFalse(filter.acceptSubpackages("com.xyz.tests"));
+    }
+
+    public void testPattern() {
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        filter.addPackage("com.acme.*.internal");
+        filter.addPackage("**.generated");
+        filter.addPackage("org.*Impl*.x");
+        filter.addPackage("net.*.internal*");
+
+        assertEquals(4, filter.getFilters().size());
+
+        assertFalse(filter.accept("com.acme.web.internal"));
+        assertFalse(filter.accept("com.acme.web.internal.util"));
+        assertTrue(filter.accept("com.acme.internal"));
+        assertTrue(filter.accept("com.acme.web.util.internal"));
+        assertTrue(filter.accept("com.acme.web"));
+
+        assertFalse(filter.accept("generated"));
+        assertFalse(filter.accept("com.acme.generated"));
+        assertFalse(filter.accept("com.generated.a.b"));
+        assertTrue(filter.accept("com.generatedx"));
+
+        assertFalse(filter.accept("org.ServiceImpl.x"));
+        assertFalse(filter.accept("org.Impl2.x.y"));
+        assertTrue(filter.accept("org.Service.x"));
+
+        assertFalse(filter.accept("net.a.internal"));
+        assertFalse(filter.accept("net.a.internalx"));
+        assertFalse(filter.accept("net.a.internalx.y"));
+        assertTrue(filter.accept("net.a.util"));
+
+        assertTrue(filter.acceptSubpackages("com.acme"));
+        assertFalse(filter.acceptSubpackages("com.acme.web.internal"));
+    }
+
+    public void testRegex() {
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        filter.addPackage("regex:com\\.acme\\.v[0-9]+");
+
+        assertFalse(filter.accept("com.acme.v1"));
+        assertFalse(filter.accept("com.acme.v12"));
+        assertTrue(filter.accept("com.acme.v1.util"));
+        assertTrue(filter.accept("com.acme.vx"));
+        assertTrue(filter.acceptSubpackages("com.acme.v1"));
+
+        filter.addPackage("regex:com\\.xyz\\..*");
+        assertFalse(filter.accept("com.xyz.util"));
+        assertTrue(filter.accept("com.xy"));
+        assertTrue(filter.accept("com.xyzz"));
+    }
+
+    public void testInvalidRegex() {
+        PackageFilter filter = new PackageFilter(new ArrayList());
+
+        try {
+
+            filter.addPackage("regex:com.(acme");
+            fail("Invalid regular expression: Should raise " +
+                "IllegalArgumentException");
+
+        } catch (IllegalArgumentException expected) {
+            assertTrue(true);
+        }
+
+        assertEquals(0, filter.getFilters().size());
+        assertTrue(filter.accept("com.acme"));
+    }
+
+    public void testAddedFilter() {
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        assertTrue(filter.accept("com.xyz.ejb"));
+
+        filter.addPackage("com.xyz.*");
+        assertFalse(filter.accept("com.xyz.ejb"));
+    }
+
     private void assertFiltersExist(PackageFilter filter) {
         assertFalse(filter.accept("java.lang"));
         assertFalse(filter.accept("javax.ejb"));
@@ -1,6 +1,7 @@
 package jdepend.framework;
 
 import java.io.*;
+import java.util.*;
 
 import junit.framework.*;
 
@@ -61,4 +62,19 @@ public class JDependTestCase extends TestCase {
     public String getPackageSubDir() {
         return packageSubDir;
     }
-}
\ No newline at end of file
+
+    protected List sort(Collection packages) {
+        List sorted = new ArrayList(packages);
+        Collections.sort(sorted,
+            new PackageComparator(PackageComparator.byName()));
+        return sorted;
+    }
+
+    protected List names(Collection packages) {
+        List names = new ArrayList();
+        for (Iterator i = packages.iterator(); i.hasNext();) {
+            names.add(((JavaPackage) i.next()).getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,179 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Verifies that jar files summarized in a <code>JarSummaryStore</code>
+ * yield the same packages as the parsed jar files, without being
+ * parsed again.
+ */
+
+public class JarSummaryStoreTest extends JDependTestCase {
+
+    private File directory;
+
+    public JarSummaryStoreTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        super.setUp();
+        try {
+            directory = File.createTempFile("jdepend", "");
+            directory.delete();
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    protected void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+        }
+        directory.delete();
+        super.tearDown();
+    }
+
+    public void testSummarizedJar() throws IOException {
+
+        File jarFile = new File(getTestDataDir() + "test.jar");
+        JarSummaryStore store = new JarSummaryStore(directory);
+
+        JavaClassBuilder builder = new JavaClassBuilder(
+            new CountingParser(), new FileManager());
+        builder.setJarSummaryStore(store);
+        List expected = new ArrayList(builder.buildClasses(jarFile));
+
+        assertEquals(1, countSummaries());
+
+        CountingParser parser = new CountingParser();
+        builder = new JavaClassBuilder(parser, new FileManager());
+        builder.setJarSummaryStore(new JarSummaryStore(directory));
+        List actual = new ArrayList(builder.buildClasses(jarFile));
+
+        assertEquals(0, parser.count);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            JavaClass e = (JavaClass) expected.get(i);
+            JavaClass a = (JavaClass) actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getPackageName(), a.getPackageName());
+            assertEquals(e.isAbstract(), a.isAbstract());
+            assertEquals(e.getSourceFile(), a.getSourceFile());
+            assertEquals(new TreeSet(names(e.getImportedPackages())),
+                new TreeSet(names(a.getImportedPackages())));
+        }
+    }
+
+    public void testSummarizedAnalysis() throws IOException {
+
+        JDepend parsed = new JDepend();
+        parsed.addDirectory(getTestDataDir() + "test.jar");
+        parsed.addDirectory(getTestDataDir() + "test.zip");
+        List expected = sort(parsed.analyze());
+
+        JDepend cold = new JDepend();
+        cold.addDirectory(getTestDataDir() + "test.jar");
+        cold.addDirectory(getTestDataDir() + "test.zip");
+        cold.setThreads(2);
+        cold.setJarSummaryStore(new JarSummaryStore(directory));
+        cold.analyze();
+
+        assertEquals(2, countSummaries());
+
+        JDepend warm = new JDepend();
+        warm.addDirectory(getTestDataDir() + "test.jar");
+        warm.addDirectory(getTestDataDir() + "test.zip");
+        warm.setJarSummaryStore(new JarSummaryStore(directory));
+        List actual = sort(warm.analyze());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            JavaPackage e = (JavaPackage) expected.get(i);
+            JavaPackage a = (JavaPackage) actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getConcreteClassCount(), a.getConcreteClassCount());
+            assertEquals(e.getAbstractClassCount(), a.getAbstractClassCount());
+            assertEquals(names(e.getEfferents()), names(a.getEfferents()));
+            assertEquals(names(e.getAfferents()), names(a.getAfferents()));
+        }
+    }
+
+    public void testSettingsAreKeyed() throws IOException {
+
+        File jarFile = new File(getTestDataDir() + "test.jar");
+        JarSummaryStore store = new JarSummaryStore(directory);
+
+        FileManager fm = new FileManager();
+        JavaClassBuilder builder = new JavaClassBuilder(
+            new CountingParser(), fm);
+        builder.setJarSummaryStore(store);
+        assertEquals(5, builder.buildClasses(jarFile).size());
+
+        fm.acceptInnerClasses(false);
+        assertEquals(4, builder.buildClasses(jarFile).size());
+
+        assertEquals(2, countSummaries());
+    }
+
+    public void testDigestIndex() throws IOException {
+
+        File jarFile = new File(directory.getPath() + ".jar");
+        Files.copy(new File(getTestDataDir() + "test.jar").toPath(),
+            jarFile.toPath());
+
+        try {
+            JarSummaryStore store = new JarSummaryStore(directory);
+            String key = store.getKey(jarFile, "");
+            long lastModified = jarFile.lastModified();
+
+            byte[] contents = Files.readAllBytes(jarFile.toPath());
+            contents[contents.length - 1]++;
+            Files.write(jarFile.toPath(), contents);
+            jarFile.setLastModified(lastModified);
+
+            assertEquals(key, store.getKey(jarFile, ""));
+
+            jarFile.setLastModified(lastModified - 2000);
+            assertFalse(key.equals(store.getKey(jarFile, "")));
+            assertEquals(0, countSummaries());
+        } finally {
+            jarFile.delete();
+        }
+    }
+
+    private int countSummaries() {
+        File[] files = directory.listFiles();
+        int count = 0;
+        for (int i = 0; i < files.length; i++) {
+            if (files[i].getName().endsWith(".summary")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class CountingParser extends ByteBufferClassFileParser {
+
+        private int count;
+
+        CountingParser() {
+            super(new PackageFilter(new ArrayList()));
+        }
+
+        public synchronized JavaClass parse(InputStream is)
+                throws IOException {
+            count++;
+            return super.parse(is);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Verifies that building classes with a pool of worker threads
+ * yields the same classes and packages as building them serially.
+ */
+
+public class JavaClassBuilderTest extends JDependTestCase {
+
+    public JavaClassBuilderTest(String name) {
+        super(name);
+    }
+
+    public void testInvalidThreads() {
+
+        JavaClassBuilder builder = new JavaClassBuilder();
+
+        try {
+
+            builder.setThreads(0);
+            fail("Invalid number of threads: Should raise " +
+                "IllegalArgumentException");
+
+        } catch (IllegalArgumentException expected) {
+            assertTrue(true);
+        }
+    }
+
+    public void testParallelBuild() throws IOException {
+
+        FileManager fm = new FileManager();
+        fm.addDirectory(getBuildDir());
+        fm.addDirectory(getTestDataDir());
+
+        AbstractParser parser = new ByteBufferClassFileParser();
+
+        JavaClassBuilder serial = new JavaClassBuilder(parser, fm);
+        JavaClassBuilder parallel = new JavaClassBuilder(parser, fm);
+        parallel.setThreads(4);
+
+        List expected = new ArrayList(serial.build());
+        List actual = new ArrayList(parallel.build());
+
+        assertTrue(expected.size() > 0);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            JavaClass e = (JavaClass) expected.get(i);
+            JavaClass a = (JavaClass) actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getImportedPackages().size(),
+                a.getImportedPackages().size());
+        }
+    }
+
+    public void testStreamingBuild() throws IOException {
+
+        FileManager fm = new FileManager();
+        fm.addDirectory(getTestDataDir());
+
+        JavaClassBuilder builder = new JavaClassBuilder(
+            new ByteBufferClassFileParser(), fm);
+        builder.setThreads(2);
+
+        final List streamed = new ArrayList();
+        builder.build(new ParserListener() {
+
+            public void onParsedJavaClass(JavaClass parsedClass) {
+                assertFalse(Thread.currentThread().getName().startsWith(
+                    "JDepend"));
+                streamed.add(parsedClass.getName());
+            }
+        });
+
+        builder.setThreads(1);
+
+        List expected = new ArrayList();
+        for (Iterator i = builder.build().iterator(); i.hasNext();) {
+            expected.add(((JavaClass) i.next()).getName());
+        }
+
+        assertEquals(10, streamed.size());
+        assertEquals(expected, streamed);
+    }
+
+    public void testFailedDiscovery() throws IOException {
+
+        final File classFile = new File(getBuildDir() + getPackageSubDir() +
+            "ExampleConcreteClass.class");
+        FileManager fm = new FileManager() {
+
+            public Iterator iterateFiles() {
+                List files = new ArrayList(Collections.nCopies(1000, 
+                    classFile));
+                final Iterator i = files.iterator();
+                return new Iterator() {
+
+                    public boolean hasNext() {
+                        return true;
+                    }
+
+                    public Object next() {
+                        if (i.hasNext()) {
+                            return i.next();
+                        }
+                        throw new IllegalStateException("discovery failed");
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+
+        JavaClassBuilder builder = new JavaClassBuilder(
+            new ByteBufferClassFileParser(), fm);
+        builder.setThreads(2);
+
+        try {
+
+            builder.build(new ParserListener() {
+
+                private int count;
+
+                public void onParsedJavaClass(JavaClass parsedClass) {
+                    // the queue of 2 threads holds the tasks and ends
+                    // of the last 64 files, so it is full when
+                    // discovery fails while the consumer waits
+                    if (++count == 1000 - 64) {
+                        try {
+                            Thread.sleep(500);
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            });
+            fail("Failed discovery: Should raise IllegalStateException");
+
+        } catch (IllegalStateException expected) {
+            assertEquals("discovery failed", expected.getMessage());
+        }
+    }
+
+    public void testParallelAnalysis() throws IOException {
+
+        JDepend serial = new JDepend();
+        serial.addDirectory(getBuildDir());
+
+        JDepend parallel = new JDepend();
+        parallel.addDirectory(getBuildDir());
+        parallel.setThreads(4);
+
+        List expected = sort(serial.analyze());
+        List actual = sort(parallel.analyze());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            JavaPackage e = (JavaPackage) expected.get(i);
+            JavaPackage a = (JavaPackage) actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getClassCount(), a.getClassCount());
+            assertEquals(names(e.getEfferents()), names(a.getEfferents()));
+            assertEquals(names(e.getAfferents()), names(a.getAfferents()));
+        }
+    }
+
+    public void testParallelAnalysisOrder() throws IOException {
+
+        JDepend serial = new JDepend();
+        serial.addDirectory(getBuildDir());
+        serial.addDirectory(getTestDataDir());
+        serial.setComponents("jdepend,java,javax");
+
+        JDepend parallel = new JDepend();
+        parallel.addDirectory(getBuildDir());
+        parallel.addDirectory(getTestDataDir());
+        parallel.setComponents("jdepend,java,javax");
+        parallel.setThreads(4);
+
+        assertSameAnalysis(serial.analyze(), parallel.analyze());
+    }
+
+    public void testParallelAnalysisOfInvalidJar() throws IOException {
+
+        File jar = File.createTempFile("jdepend", ".jar");
+        try {
+            JarFile source = new JarFile(getTestDataDir() + "test.jar");
+            JarOutputStream out = new JarOutputStream(
+                new FileOutputStream(jar));
+            try {
+                for (Iterator i = Collections.list(source.entries())
+                        .iterator(); i.hasNext();) {
+                    JarEntry entry = (JarEntry) i.next();
+                    out.putNextEntry(new JarEntry(entry.getName()));
+                    InputStream in = source.getInputStream(entry);
+                    byte[] buffer = new byte[4096];
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, n);
+                    }
+                    in.close();
+                }
+                out.putNextEntry(new JarEntry("invalid/Invalid.class"));
+                out.write(new byte[] { 1, 2, 3, 4 });
+            } finally {
+                out.close();
+                source.close();
+            }
+
+            JDepend serial = new JDepend();
+            serial.addDirectory(jar.getPath());
+            serial.addDirectory(getTestDataDir() + "test.zip");
+
+            JDepend parallel = new JDepend();
+            parallel.addDirectory(jar.getPath());
+            parallel.addDirectory(getTestDataDir() + "test.zip");
+            parallel.setThreads(4);
+
+            Collection expected = serial.analyze();
+            assertTrue(expected.size() > 0);
+            assertSameAnalysis(expected, parallel.analyze());
+        } finally {
+            jar.delete();
+        }
+    }
+
+    private void assertSameAnalysis(Collection expected, Collection actual) {
+        assertEquals(names(expected), names(actual));
+        Iterator i = expected.iterator();
+        for (Iterator j = actual.iterator(); j.hasNext();) {
+            JavaPackage e = (JavaPackage) i.next();
+            JavaPackage a = (JavaPackage) j.next();
+            assertEquals(e.getClassCount(), a.getClassCount());
+            assertEquals(names(e.getEfferents()), names(a.getEfferents()));
+            assertEquals(names(e.getAfferents()), names(a.getAfferents()));
+        }
+    }
+}
@@ -44,7 +44,7 @@ public class MetricTest extends JDependTestCase {
 
     private void assertAnalyzePackages() {
 
-        assertEquals(56, jdepend.countClasses());
+        assertEquals(86, jdepend.countClasses());
 
         PackageFilter filter = jdepend.getFilter();
         filter.addPackage("junit.*");
@@ -62,13 +62,13 @@ public class MetricTest extends JDependTestCase {
         JavaPackage p = jdepend.getPackage("jdepend.framework");
         assertNotNull(p);
 
-        assertEquals(29, p.getConcreteClassCount());
-        assertEquals(6, p.getAbstractClassCount());
+        assertEquals(57, p.getConcreteClassCount());
+        assertEquals(8, p.getAbstractClassCount());
         assertEquals(3, p.afferentCoupling());
         assertEquals(5, p.efferentCoupling());
-        assertEquals(format(0.17f), format(p.abstractness()));
+        assertEquals(format(0.12f), format(p.abstractness()));
         assertEquals(format(0.62f), format(p.instability()));
-        assertEquals(format(0.2f), format(p.distance()));
+        assertEquals(format(0.25f), format(p.distance()));
         assertEquals(1, p.getVolatility());
     }
 
@@ -134,6 +134,66 @@ public class MetricTest extends JDependTestCase {
         assertEquals(7, analyzedPkg.getConcreteClassCount());
     }
 
+    public void testChangedMetrics() {
+
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+
+        JavaClass concrete = new JavaClass("A.Concrete");
+        JavaClass abstractClass = new JavaClass("A.Abstract");
+        abstractClass.isAbstract(true);
+
+        a.addClass(concrete);
+        assertEquals("0", format(a.abstractness()));
+        assertEquals("1", format(a.distance()));
+
+        a.addClass(abstractClass);
+        a.addClass(abstractClass);
+        assertEquals(1, a.getAbstractClassCount());
+        assertEquals(1, a.getConcreteClassCount());
+        assertEquals(format(0.5f), format(a.abstractness()));
+
+        a.dependsUpon(b);
+        assertEquals("1", format(a.instability()));
+        assertEquals(format(0.5f), format(a.distance()));
+
+        a.setVolatility(0);
+        assertEquals("0", format(a.distance()));
+
+        a.removeClass(new JavaClass("A.Abstract"));
+        assertEquals(0, a.getAbstractClassCount());
+        assertEquals("0", format(a.abstractness()));
+
+        a.removeClasses();
+        assertEquals(0, a.getClassCount());
+        assertEquals(0, a.getConcreteClassCount());
+    }
+
+    public void testPackageMetrics() throws IOException {
+
+        jdepend.addDirectory(getBuildDir());
+        jdepend.analyze();
+
+        PackageMetrics metrics = jdepend.getPackageMetrics();
+        PackageGraph graph = metrics.getGraph();
+        assertEquals(graph.size(), metrics.size());
+
+        for (int id = 0; id < metrics.size(); id++) {
+            JavaPackage p = graph.getPackage(id);
+            assertEquals(p.getClassCount(), metrics.getClassCounts()[id]);
+            assertEquals(p.getAbstractClassCount(),
+                metrics.getAbstractClassCounts()[id]);
+            assertEquals(p.afferentCoupling(),
+                metrics.getAfferentCouplings()[id]);
+            assertEquals(p.efferentCoupling(),
+                metrics.getEfferentCouplings()[id]);
+            assertEquals(p.abstractness(), metrics.getAbstractness()[id], 0);
+            assertEquals(p.instability(), metrics.getInstability()[id], 0);
+            assertEquals(p.distance(), metrics.getDistances()[id], 0);
+            assertEquals(p.getVolatility(), metrics.getVolatilities()[id]);
+        }
+    }
+
     private String format(float f) {
         return formatter.format(f);
     }
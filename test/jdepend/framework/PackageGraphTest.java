@@ -0,0 +1,106 @@
+package jdepend.framework;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Verifies that analyzed packages read their afferents and efferents
+ * from the <code>PackageGraph</code> built by the analysis, until they
+ * change.
+ */
+
+public class PackageGraphTest extends JDependTestCase {
+
+    private JDepend jdepend;
+
+    public PackageGraphTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        super.setUp();
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        filter.addPackage("java.*");
+        filter.addPackage("javax.*");
+        jdepend = new JDepend(filter);
+    }
+
+    public void testAnalyzedGraph() throws IOException {
+
+        jdepend.addDirectory(getBuildDir());
+        List expected = copyDependencies(jdepend.analyze());
+
+        PackageGraph graph = jdepend.getPackageGraph();
+        assertTrue(graph.isCurrent());
+        assertEquals(jdepend.countPackages(), graph.size());
+
+        int id = 0;
+        for (Iterator i = jdepend.getPackages().iterator(); i.hasNext();) {
+            JavaPackage jPackage = (JavaPackage) i.next();
+            assertEquals(id, graph.getId(jPackage));
+            assertSame(jPackage, graph.getPackage(id));
+            assertEquals(jPackage.efferentCoupling(),
+                graph.getEfferentCount(id));
+            assertEquals(jPackage.afferentCoupling(),
+                graph.getAfferentCount(id));
+            for (int j = 0; j < graph.getEfferentCount(id); j++) {
+                JavaPackage efferent =
+                    graph.getPackage(graph.getEfferent(id, j));
+                assertTrue(efferent.getAfferents().contains(jPackage));
+            }
+            id++;
+        }
+
+        assertEquals(expected, copyDependencies(jdepend.getPackages()));
+    }
+
+    public void testChangedPackage() {
+
+        JavaPackage a = jdepend.addPackage("A");
+        JavaPackage b = jdepend.addPackage("B");
+        JavaPackage c = jdepend.addPackage("C");
+        a.dependsUpon(b);
+
+        PackageGraph graph = jdepend.getPackageGraph();
+        assertEquals(3, graph.size());
+        assertEquals(1, a.efferentCoupling());
+        assertEquals(1, b.afferentCoupling());
+        assertSame(graph, jdepend.getPackageGraph());
+
+        a.dependsUpon(b);
+        assertTrue(graph.isCurrent());
+
+        b.dependsUpon(c);
+        assertFalse(graph.isCurrent());
+        assertEquals(1, b.efferentCoupling());
+        assertEquals(1, b.afferentCoupling());
+
+        graph = jdepend.getPackageGraph();
+        assertTrue(graph.isCurrent());
+        assertEquals(1, graph.getEfferentCount(graph.getId(b)));
+        assertEquals(c, graph.getPackage(
+            graph.getEfferent(graph.getId(b), 0)));
+        assertEquals(a, graph.getPackage(
+            graph.getAfferent(graph.getId(b), 0)));
+
+        try {
+            a.getEfferents().clear();
+            fail("Should raise UnsupportedOperationException");
+        } catch (UnsupportedOperationException success) {
+        }
+    }
+
+    private List copyDependencies(Collection packages) {
+        List dependencies = new ArrayList();
+        for (Iterator i = packages.iterator(); i.hasNext();) {
+            JavaPackage jPackage = (JavaPackage) i.next();
+            dependencies.add(jPackage.getName() + " " +
+                new ArrayList(jPackage.getEfferents()) + " " +
+                new ArrayList(jPackage.getAfferents()));
+        }
+        return dependencies;
+    }
+}
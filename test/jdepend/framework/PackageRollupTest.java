@@ -0,0 +1,160 @@
+package jdepend.framework;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Verifies that the metrics of each package name prefix of a
+ * <code>PackageRollup</code> are those of the component it would be,
+ * were the prefixes of its depth components.
+ */
+
+public class PackageRollupTest extends JDependTestCase {
+
+    private JDepend jdepend;
+
+    public PackageRollupTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        super.setUp();
+        jdepend = new JDepend(createFilter());
+    }
+
+    private PackageFilter createFilter() {
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        filter.addPackage("java.*");
+        filter.addPackage("javax.*");
+        return filter;
+    }
+
+    public void testPrefixes() {
+
+        JavaPackage a = jdepend.addPackage("a");
+        JavaPackage ax = jdepend.addPackage("a.x");
+        JavaPackage ay = jdepend.addPackage("a.y");
+        JavaPackage bz = jdepend.addPackage("b.z.c");
+
+        a.addClass(new JavaClass("a.A"));
+        JavaClass abstractClass = new JavaClass("a.x.X");
+        abstractClass.isAbstract(true);
+        ax.addClass(abstractClass);
+        ay.addClass(new JavaClass("a.y.Y"));
+        bz.addClass(new JavaClass("b.z.c.Z"));
+
+        ax.dependsUpon(bz);
+        ax.dependsUpon(ay);
+        bz.dependsUpon(ay);
+        a.dependsUpon(ax);
+
+        PackageRollup rollup = jdepend.getPackageRollup();
+        assertEquals(6, rollup.size());
+        assertEquals(3, rollup.getMaxDepth());
+        assertEquals("a", rollup.getName(0));
+        assertEquals("b.z.c", rollup.getName(5));
+        assertEquals(-1, rollup.getId("c"));
+
+        int idA = rollup.getId("a");
+        assertEquals(1, rollup.getDepth(idA));
+        assertEquals(-1, rollup.getParent(idA));
+        assertEquals(3, rollup.getClassCounts()[idA]);
+        assertEquals(1, rollup.getAbstractClassCounts()[idA]);
+        assertEquals(1, rollup.getAfferentCouplings()[idA]);
+        assertEquals(1, rollup.getEfferentCouplings()[idA]);
+        assertEquals(0.33f, rollup.getAbstractness()[idA], 0.01f);
+        assertEquals(0.5f, rollup.getInstability()[idA], 0);
+        assertEquals(0.17f, rollup.getDistances()[idA], 0.01f);
+        assertTrue(rollup.getCycles()[idA]);
+
+        int idB = rollup.getId("b");
+        assertEquals(1, rollup.getClassCounts()[idB]);
+        assertTrue(rollup.getCycles()[idB]);
+
+        int idX = rollup.getId("a.x");
+        assertEquals(2, rollup.getDepth(idX));
+        assertEquals(idA, rollup.getParent(idX));
+        assertEquals(1, rollup.getAfferentCouplings()[idX]);
+        assertEquals(2, rollup.getEfferentCouplings()[idX]);
+        assertFalse(rollup.getCycles()[idX]);
+
+        int idY = rollup.getId("a.y");
+        assertEquals(2, rollup.getAfferentCouplings()[idY]);
+        assertEquals(0, rollup.getEfferentCouplings()[idY]);
+
+        int idZ = rollup.getId("b.z");
+        assertEquals(2, rollup.getDepth(idZ));
+        assertEquals(1, rollup.getAfferentCouplings()[idZ]);
+        assertEquals(1, rollup.getEfferentCouplings()[idZ]);
+        assertFalse(rollup.getCycles()[idZ]);
+    }
+
+    public void testDependsOnCycle() {
+
+        JavaPackage cp = jdepend.addPackage("c.p");
+        JavaPackage dq = jdepend.addPackage("d.q");
+        JavaPackage er = jdepend.addPackage("e.r");
+        JavaPackage fs = jdepend.addPackage("f.s");
+        JavaPackage gt = jdepend.addPackage("g.t");
+
+        cp.dependsUpon(dq);
+        dq.dependsUpon(er);
+        er.dependsUpon(dq);
+        fs.dependsUpon(cp);
+        fs.dependsUpon(gt);
+
+        PackageRollup rollup = jdepend.getPackageRollup();
+        assertTrue(rollup.getCycles()[rollup.getId("c")]);
+        assertTrue(rollup.getCycles()[rollup.getId("d")]);
+        assertTrue(rollup.getCycles()[rollup.getId("e")]);
+        assertTrue(rollup.getCycles()[rollup.getId("f")]);
+        assertFalse(rollup.getCycles()[rollup.getId("g")]);
+        assertTrue(cp.containsCycle());
+        assertFalse(gt.containsCycle());
+    }
+
+    public void testComponentsAtEachDepth() throws IOException {
+
+        jdepend.addDirectory(getBuildDir());
+        jdepend.analyze();
+
+        PackageRollup rollup = jdepend.getPackageRollup();
+        assertTrue(rollup.getMaxDepth() > 1);
+
+        for (int level = 1; level <= rollup.getMaxDepth(); level++) {
+
+            StringBuffer components = new StringBuffer();
+            for (int id = 0; id < rollup.size(); id++) {
+                if (rollup.getDepth(id) == level) {
+                    components.append(rollup.getName(id)).append(',');
+                }
+            }
+
+            JDepend levelAnalyzer = new JDepend(createFilter());
+            levelAnalyzer.setComponents(components.toString());
+            levelAnalyzer.addDirectory(getBuildDir());
+            levelAnalyzer.analyze();
+
+            for (int id = 0; id < rollup.size(); id++) {
+                if (rollup.getDepth(id) != level) {
+                    continue;
+                }
+                JavaPackage p = levelAnalyzer.getPackage(rollup.getName(id));
+                assertNotNull(rollup.getName(id), p);
+                assertEquals(p.getClassCount(), rollup.getClassCounts()[id]);
+                assertEquals(p.getAbstractClassCount(),
+                    rollup.getAbstractClassCounts()[id]);
+                assertEquals(p.afferentCoupling(),
+                    rollup.getAfferentCouplings()[id]);
+                assertEquals(p.efferentCoupling(),
+                    rollup.getEfferentCouplings()[id]);
+                assertEquals(p.abstractness(),
+                    rollup.getAbstractness()[id], 0);
+                assertEquals(p.instability(),
+                    rollup.getInstability()[id], 0);
+                assertEquals(p.distance(), rollup.getDistances()[id], 0);
+                assertEquals(p.containsCycle(), rollup.getCycles()[id]);
+            }
+        }
+    }
+}
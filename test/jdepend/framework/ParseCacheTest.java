@@ -0,0 +1,164 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Verifies that classes read from the <code>ParseCache</code> are the
+ * same as the parsed classes, and that changed classes are parsed again.
+ */
+
+public class ParseCacheTest extends JDependTestCase {
+
+    private File directory;
+    private FileManager fileManager;
+
+    public ParseCacheTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        super.setUp();
+        try {
+            directory = File.createTempFile("jdepend", "");
+            directory.delete();
+            fileManager = new FileManager();
+            fileManager.addDirectory(getBuildDir() + "jdepend");
+            fileManager.addDirectory(getTestDataDir() + "test.jar");
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    protected void tearDown() {
+        new File(directory, ParseCache.FILE_NAME).delete();
+        directory.delete();
+        super.tearDown();
+    }
+
+    public void testWarmBuild() throws IOException {
+
+        JavaClassBuilder builder = new JavaClassBuilder(
+            new CountingParser(), fileManager);
+        ParseCache cache = new ParseCache(directory);
+        builder.setParseCache(cache);
+        List expected = new ArrayList(builder.build());
+        cache.save();
+
+        assertTrue(cache.getFile().isFile());
+
+        CountingParser parser = new CountingParser();
+        builder = new JavaClassBuilder(parser, fileManager);
+        builder.setParseCache(new ParseCache(directory));
+        builder.setThreads(2);
+        List actual = new ArrayList(builder.build());
+
+        assertEquals(0, parser.count);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            JavaClass e = (JavaClass) expected.get(i);
+            JavaClass a = (JavaClass) actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getPackageName(), a.getPackageName());
+            assertEquals(e.getSourceFile(), a.getSourceFile());
+            assertEquals(e.isAbstract(), a.isAbstract());
+            assertEquals(e.getImportedPackages().size(),
+                a.getImportedPackages().size());
+            for (Iterator j = a.getImportedPackages().iterator();
+                    j.hasNext();) {
+                JavaPackage imported = (JavaPackage) j.next();
+                assertSame(imported, parser.getPackageRegistry().getPackage(
+                    imported.getName()));
+            }
+        }
+    }
+
+    public void testSaveReplacesFile() throws IOException {
+
+        ParseCache cache = new ParseCache(directory);
+        JavaClassBuilder builder = new JavaClassBuilder(
+            new CountingParser(), fileManager);
+        builder.setParseCache(cache);
+        builder.setThreads(4);
+        int classes = builder.build().size();
+        cache.save();
+        cache.save();
+
+        assertEquals(1, directory.list().length);
+
+        CountingParser parser = new CountingParser();
+        builder = new JavaClassBuilder(parser, fileManager);
+        builder.setParseCache(new ParseCache(directory));
+        assertEquals(classes, builder.build().size());
+        assertEquals(0, parser.count);
+    }
+
+    public void testChangedFilter() throws IOException {
+
+        ParseCache cache = new ParseCache(directory);
+        JavaClassBuilder builder = new JavaClassBuilder(
+            new CountingParser(), fileManager);
+        builder.setParseCache(cache);
+        builder.build();
+        cache.save();
+
+        PackageFilter filter = new PackageFilter(new ArrayList());
+        filter.addPackage("java.io");
+        CountingParser parser = new CountingParser(filter);
+        builder = new JavaClassBuilder(parser, fileManager);
+        builder.setParseCache(new ParseCache(directory));
+        int classes = builder.build().size();
+
+        assertEquals(classes, parser.count);
+    }
+
+    public void testClear() throws IOException {
+
+        ParseCache cache = new ParseCache(directory);
+        JavaClassBuilder builder = new JavaClassBuilder(
+            new CountingParser(), fileManager);
+        builder.setParseCache(cache);
+        builder.build();
+        cache.save();
+
+        cache = new ParseCache(directory);
+        cache.clear();
+        assertFalse(cache.getFile().exists());
+
+        CountingParser parser = new CountingParser();
+        builder = new JavaClassBuilder(parser, fileManager);
+        builder.setParseCache(cache);
+        int classes = builder.build().size();
+
+        assertEquals(classes, parser.count);
+    }
+
+    private static class CountingParser extends ByteBufferClassFileParser {
+
+        private int count;
+
+        CountingParser() {
+            this(new PackageFilter(new ArrayList()));
+        }
+
+        CountingParser(PackageFilter filter) {
+            super(filter);
+        }
+
+        public synchronized JavaClass parse(InputStream is)
+                throws IOException {
+            count++;
+            return super.parse(is);
+        }
+
+        public synchronized JavaClass parse(File classFile)
+                throws IOException {
+            count++;
+            return super.parse(classFile);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package jdepend.framework;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+
+/**
+ * Verifies that a <code>ReachabilityIndex</code> answers whether a
+ * package depends upon another as a walk over the efferents would.
+ */
+
+public class ReachabilityIndexTest extends JDependTestCase {
+
+    public ReachabilityIndexTest(String name) {
+        super(name);
+    }
+
+    public void testDependsTransitively() {
+
+        JDepend jdepend = new JDepend(new PackageFilter(new ArrayList()));
+        JavaPackage a = jdepend.addPackage("A");
+        JavaPackage b = jdepend.addPackage("B");
+        JavaPackage c = jdepend.addPackage("C");
+        JavaPackage d = jdepend.addPackage("D");
+        jdepend.addPackage("E");
+
+        a.dependsUpon(b);
+        b.dependsUpon(c);
+        c.dependsUpon(b);
+        c.dependsUpon(d);
+
+        assertTrue(jdepend.dependsTransitively("A", "D"));
+        assertTrue(jdepend.dependsTransitively("B", "B"));
+        assertTrue(jdepend.dependsTransitively("C", "B"));
+        assertFalse(jdepend.dependsTransitively("A", "A"));
+        assertFalse(jdepend.dependsTransitively("D", "A"));
+        assertFalse(jdepend.dependsTransitively("A", "E"));
+        assertFalse(jdepend.dependsTransitively("A", "F"));
+
+        StringWriter pairs = new StringWriter();
+        jdepend.getReachabilityIndex().writePairs(new PrintWriter(pairs));
+        assertEquals("A,B\nA,C\nA,D\nB,B\nB,C\nB,D\nC,B\nC,C\nC,D\n",
+            pairs.toString().replaceAll("\r", ""));
+
+        ReachabilityIndex index = jdepend.getReachabilityIndex();
+        assertSame(index, jdepend.getReachabilityIndex());
+
+        d.dependsUpon(a);
+        assertTrue(jdepend.dependsTransitively("D", "A"));
+        assertTrue(jdepend.dependsTransitively("A", "A"));
+        assertNotSame(index, jdepend.getReachabilityIndex());
+    }
+
+    public void testAnalyzedPackages() throws IOException {
+
+        JDepend jdepend = new JDepend(new PackageFilter(new ArrayList()));
+        jdepend.addDirectory(getBuildDir());
+        jdepend.analyze();
+
+        ReachabilityIndex index = jdepend.getReachabilityIndex();
+        for (Iterator i = jdepend.getPackages().iterator(); i.hasNext();) {
+            JavaPackage from = (JavaPackage) i.next();
+            Set reached = walk(from);
+            for (Iterator j = jdepend.getPackages().iterator();
+                    j.hasNext();) {
+                JavaPackage to = (JavaPackage) j.next();
+                assertEquals(from + " " + to, reached.contains(to),
+                    index.dependsTransitively(from, to));
+            }
+        }
+    }
+
+    private Set walk(JavaPackage from) {
+        Set reached = new HashSet();
+        LinkedList pending = new LinkedList(from.getEfferents());
+        while (!pending.isEmpty()) {
+            JavaPackage jPackage = (JavaPackage) pending.removeFirst();
+            if (reached.add(jPackage)) {
+                pending.addAll(jPackage.getEfferents());
+            }
+        }
+        return reached;
+    }
+}
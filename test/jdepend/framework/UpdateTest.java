@@ -0,0 +1,176 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Verifies that changed class files are analyzed again in place,
+ * and that analyzing again replaces the previous analysis.
+ */
+
+public class UpdateTest extends JDependTestCase {
+
+    private File directory;
+    private File packageDirectory;
+    private JDepend jdepend;
+
+    public UpdateTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        super.setUp();
+        try {
+            directory = File.createTempFile("jdepend", "");
+            directory.delete();
+            packageDirectory = new File(directory, "jdepend" +
+                File.separator + "framework");
+            packageDirectory.mkdirs();
+            copy("ExampleConcreteClass.class");
+            copy("ExampleInterface.class");
+
+            PackageFilter filter = new PackageFilter(new ArrayList());
+            filter.addPackage("java.lang");
+            jdepend = new JDepend(filter);
+            jdepend.addDirectory(directory.getPath());
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    protected void tearDown() {
+        delete(directory);
+        super.tearDown();
+    }
+
+    public void testAnalyzeAgain() throws IOException {
+
+        jdepend.analyze();
+        JavaPackage p = jdepend.getPackage("jdepend.framework");
+        assertEquals(2, p.getClassCount());
+        int efferents = p.efferentCoupling();
+        int packages = jdepend.countPackages();
+
+        classFile("ExampleConcreteClass.class").delete();
+        jdepend.analyze();
+
+        p = jdepend.getPackage("jdepend.framework");
+        assertEquals(1, p.getClassCount());
+        assertTrue(p.efferentCoupling() < efferents);
+        assertEquals(p.efferentCoupling() + 1, jdepend.countPackages());
+        assertTrue(jdepend.countPackages() < packages);
+        assertNull(jdepend.getPackage("java.awt.dnd.peer"));
+    }
+
+    public void testUpdate() throws IOException {
+
+        jdepend.analyze();
+        JavaPackage p = jdepend.getPackage("jdepend.framework");
+        JavaPackage peer = jdepend.getPackage("java.awt.dnd.peer");
+        assertEquals(2, p.getClassCount());
+        int efferents = p.efferentCoupling();
+        assertTrue(efferents > 0);
+        assertTrue(peer.getAfferents().contains(p));
+
+        File classFile = classFile("ExampleConcreteClass.class");
+        classFile.delete();
+        Collection changed = jdepend.update(
+            Collections.singletonList(classFile));
+
+        assertTrue(changed.contains(p));
+        assertTrue(changed.contains(peer));
+        assertEquals(1, p.getClassCount());
+        assertTrue(p.efferentCoupling() < efferents);
+        assertFalse(peer.getAfferents().contains(p));
+        assertNull(jdepend.getPackage("java.awt.dnd.peer"));
+
+        copy("ExampleConcreteClass.class");
+        changed = jdepend.update(Collections.singletonList(classFile));
+
+        assertTrue(changed.contains(p));
+        assertEquals(2, p.getClassCount());
+        assertEquals(efferents, p.efferentCoupling());
+        assertTrue(jdepend.getPackage("java.awt.dnd.peer")
+            .getAfferents().contains(p));
+    }
+
+    public void testUpdateDeletedDirectory() throws IOException {
+
+        jdepend.analyze();
+
+        delete(packageDirectory);
+        jdepend.update(Collections.singletonList(packageDirectory));
+
+        assertNull(jdepend.getPackage("jdepend.framework"));
+        assertEquals(0, jdepend.countPackages());
+    }
+
+    public void testWatch() throws Exception {
+
+        jdepend.analyze();
+
+        final Collection[] notified = new Collection[1];
+        Thread watcher = new Thread() {
+
+            public void run() {
+                try {
+                    jdepend.watch(new WatchListener() {
+
+                        public void onPackagesChanged(Collection packages) {
+                            synchronized (notified) {
+                                notified[0] = packages;
+                                notified.notifyAll();
+                            }
+                        }
+                    });
+                } catch (IOException e) {
+                    fail(e.getMessage());
+                }
+            }
+        };
+        watcher.start();
+
+        try {
+            synchronized (notified) {
+                long end = System.currentTimeMillis() + 10000;
+                while (notified[0] == null &&
+                    System.currentTimeMillis() < end) {
+                    copy("ExampleAbstractClass.class");
+                    notified.wait(500);
+                }
+            }
+        } finally {
+            watcher.interrupt();
+            watcher.join();
+        }
+
+        assertNotNull(notified[0]);
+        assertEquals(3, jdepend.getPackage("jdepend.framework")
+            .getClassCount());
+    }
+
+    private File classFile(String name) {
+        return new File(packageDirectory, name);
+    }
+
+    private void copy(String name) throws IOException {
+        Files.copy(new File(getBuildDir() + getPackageSubDir() + name)
+            .toPath(), classFile(name).toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        file.delete();
+    }
+}